@@ -0,0 +1,72 @@
+/*
+ * ========================================================================
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * ========================================================================
+ */
+package com.manning.javapersistence.springdatajpa.model;
+
+public class KeysetCursor {
+
+    private final String username;
+
+    private final Long id;
+
+    private final int size;
+
+    private KeysetCursor(String username, Long id, int size) {
+        if (size < 1) {
+            throw new IllegalArgumentException("size must be positive: " + size);
+        }
+        this.username = username;
+        this.id = id;
+        this.size = size;
+    }
+
+    public static KeysetCursor first(int size) {
+        return new KeysetCursor(null, null, size);
+    }
+
+    public static KeysetCursor after(User last, int size) {
+        return new KeysetCursor(last.getUsername(), last.getId(), size);
+    }
+
+    public boolean isFirst() {
+        return id == null;
+    }
+
+    public String getUsername() {
+        return username;
+    }
+
+    public Long getId() {
+        return id;
+    }
+
+    public int getSize() {
+        return size;
+    }
+
+    @Override
+    public String toString() {
+        return "KeysetCursor{" +
+                "username='" + username + '\'' +
+                ", id=" + id +
+                ", size=" + size +
+                '}';
+    }
+}
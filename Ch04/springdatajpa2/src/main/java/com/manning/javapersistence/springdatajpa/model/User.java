@@ -25,7 +25,8 @@ import java.time.LocalDate;
 import java.util.Objects;
 
 @Entity
-@Table(name = "USERS")
+@Table(name = "USERS",
+        indexes = @Index(name = "IDX_USERS_ACTIVE_USERNAME_ID", columnList = "active, username, id"))
 public class User {
 
     @Id
@@ -0,0 +1,52 @@
+/*
+ * ========================================================================
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * ========================================================================
+ */
+package com.manning.javapersistence.springdatajpa.model;
+
+import java.util.Collections;
+import java.util.List;
+
+public class Window<T> {
+
+    private final List<T> content;
+
+    private final KeysetCursor next;
+
+    public Window(List<T> content, KeysetCursor next) {
+        this.content = Collections.unmodifiableList(content);
+        this.next = next;
+    }
+
+    public List<T> getContent() {
+        return content;
+    }
+
+    public boolean hasNext() {
+        return next != null;
+    }
+
+    public KeysetCursor next() {
+        if (next == null) {
+            throw new IllegalStateException("No rows after the last row of this window");
+        }
+        return next;
+    }
+
+}
@@ -20,9 +20,12 @@
  */
 package com.manning.javapersistence.springdatajpa.repositories;
 
+import com.manning.javapersistence.springdatajpa.model.KeysetCursor;
 import com.manning.javapersistence.springdatajpa.model.Projection;
 import com.manning.javapersistence.springdatajpa.model.User;
+import com.manning.javapersistence.springdatajpa.model.Window;
 import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageRequest;
 import org.springframework.data.domain.Pageable;
 import org.springframework.data.domain.Sort;
 import org.springframework.data.jpa.repository.JpaRepository;
@@ -81,6 +84,24 @@ public interface UserRepository extends JpaRepository<User, Long> {
 
     List<User> findByActive(boolean active, Pageable pageable);
 
+    @Query("select u from User u where u.active = :active and " +
+            "(u.username > :username or (u.username = :username and u.id > :id))")
+    List<User> findByActiveAndKeysetAfter(@Param("active") boolean active, @Param("username") String username,
+                                          @Param("id") long id, Pageable pageable);
+
+    default Window<User> findByActiveAfter(boolean active, KeysetCursor cursor) {
+        // one extra row tells whether another window follows
+        Pageable limit = PageRequest.of(0, cursor.getSize() + 1, Sort.by("username", "id"));
+        List<User> rows = cursor.isFirst()
+                ? findByActive(active, limit)
+                : findByActiveAndKeysetAfter(active, cursor.getUsername(), cursor.getId(), limit);
+        if (rows.size() <= cursor.getSize()) {
+            return new Window<>(rows, null);
+        }
+        List<User> content = rows.subList(0, cursor.getSize());
+        return new Window<>(content, KeysetCursor.after(content.get(content.size() - 1), cursor.getSize()));
+    }
+
     Streamable<User> findByEmailContaining(String text);
 
     Streamable<User> findByLevel(int level);
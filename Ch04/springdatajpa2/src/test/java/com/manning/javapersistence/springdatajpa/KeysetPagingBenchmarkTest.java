@@ -0,0 +1,108 @@
+/*
+ * ========================================================================
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * ========================================================================
+ */
+package com.manning.javapersistence.springdatajpa;
+
+import com.manning.javapersistence.springdatajpa.model.KeysetCursor;
+import com.manning.javapersistence.springdatajpa.model.User;
+import com.manning.javapersistence.springdatajpa.model.Window;
+import com.manning.javapersistence.springdatajpa.repositories.UserRepository;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.TestInstance;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Sort;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.sql.Date;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+// run with: mvn test -Dtest=KeysetPagingBenchmarkTest -Dbenchmark=true
+@SpringBootTest
+@TestInstance(TestInstance.Lifecycle.PER_CLASS)
+@EnabledIfSystemProperty(named = "benchmark", matches = "true")
+class KeysetPagingBenchmarkTest {
+
+    private static final int USERS = 1_000_000;
+    private static final long FIRST_ID = 1_000_000_000L;
+    private static final int PAGE_SIZE = 100;
+    private static final int[] PAGES = {1, 100, 1_000, 5_000, 9_000};
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @BeforeAll
+    void beforeAll() {
+        List<Object[]> batch = new ArrayList<>();
+        for (int i = 0; i < USERS; i++) {
+            batch.add(new Object[]{FIRST_ID + i, String.format("user%07d", i),
+                    Date.valueOf(LocalDate.of(2020, 1, 1).plusDays(i % 1000)),
+                    "user" + i + "@somedomain.com", i % 5, true});
+            if (batch.size() == 10_000) {
+                insert(batch);
+            }
+        }
+        insert(batch);
+    }
+
+    private void insert(List<Object[]> batch) {
+        jdbcTemplate.batchUpdate("INSERT INTO USERS (ID, USERNAME, REGISTRATION_DATE, EMAIL, LEVEL, ACTIVE) " +
+                "VALUES (?, ?, ?, ?, ?, ?)", batch);
+        batch.clear();
+    }
+
+    @Test
+    void compareOffsetAndKeysetPages() {
+        Sort keysetOrder = Sort.by("username", "id");
+        for (int page : PAGES) {
+            User last = userRepository.findByActive(true, PageRequest.of(page - 1, PAGE_SIZE, keysetOrder))
+                    .get(PAGE_SIZE - 1);
+
+            long start = System.nanoTime();
+            List<User> offsetPage = userRepository.findByActive(true, PageRequest.of(page, PAGE_SIZE, keysetOrder));
+            long offsetTime = System.nanoTime() - start;
+
+            start = System.nanoTime();
+            Window<User> keysetWindow = userRepository.findByActiveAfter(true, KeysetCursor.after(last, PAGE_SIZE));
+            long keysetTime = System.nanoTime() - start;
+
+            assertEquals(offsetPage, keysetWindow.getContent());
+            System.out.println("Page " + page + ": offset " + offsetTime / 1000 + " us, keyset " +
+                    keysetTime / 1000 + " us");
+        }
+    }
+
+    @AfterAll
+    void afterAll() {
+        jdbcTemplate.update("DELETE FROM USERS WHERE ID >= ?", FIRST_ID);
+    }
+
+}
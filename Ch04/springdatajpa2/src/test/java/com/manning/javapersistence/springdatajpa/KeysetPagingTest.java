@@ -0,0 +1,67 @@
+/*
+ * ========================================================================
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * ========================================================================
+ */
+package com.manning.javapersistence.springdatajpa;
+
+import com.manning.javapersistence.springdatajpa.model.KeysetCursor;
+import com.manning.javapersistence.springdatajpa.model.User;
+import com.manning.javapersistence.springdatajpa.model.Window;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class KeysetPagingTest extends SpringDataJpaApplicationTests {
+
+    @Test
+    void testFindByActiveAfter() {
+        List<Integer> windowSizes = new ArrayList<>();
+        List<String> usernames = new ArrayList<>();
+
+        Window<User> window = userRepository.findByActiveAfter(true, KeysetCursor.first(3));
+        while (true) {
+            windowSizes.add(window.getContent().size());
+            window.getContent().forEach(user -> usernames.add(user.getUsername()));
+            if (!window.hasNext()) {
+                break;
+            }
+            window = userRepository.findByActiveAfter(true, window.next());
+        }
+
+        assertAll(
+                () -> assertEquals(List.of(3, 3, 2), windowSizes),
+                () -> assertEquals(List.of("beth", "burk", "darren", "john", "julius", "katie", "mike", "stephanie"),
+                        usernames)
+        );
+    }
+
+    @Test
+    void testFindByActiveAfterLastWindow() {
+        Window<User> window = userRepository.findByActiveAfter(false, KeysetCursor.first(2));
+
+        assertAll(
+                () -> assertEquals(2, window.getContent().size()),
+                () -> assertFalse(window.hasNext()),
+                () -> assertThrows(IllegalStateException.class, window::next)
+        );
+    }
+}
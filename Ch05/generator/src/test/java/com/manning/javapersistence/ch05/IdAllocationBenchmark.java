@@ -0,0 +1,112 @@
+/*
+ * ========================================================================
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * ========================================================================
+ */
+package com.manning.javapersistence.ch05;
+
+import com.manning.javapersistence.ch05.model.Item;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+
+import javax.persistence.EntityManager;
+import javax.persistence.EntityManagerFactory;
+import javax.persistence.Persistence;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.function.IntFunction;
+
+// run with: mvn test -Dtest=IdAllocationBenchmark -Dbenchmark=true
+@EnabledIfSystemProperty(named = "benchmark", matches = "true")
+public class IdAllocationBenchmark {
+
+    private static final int THREADS = 8;
+    private static final int ITEMS_PER_THREAD = 25_000;
+    private static final int BATCH = 1000;
+
+    @Test
+    public void insertConcurrently() throws Exception {
+        EntityManagerFactory emf = Persistence.createEntityManagerFactory("ch05.generator", Map.of(
+                "hibernate.show_sql", "false",
+                "hibernate.jdbc.batch_size", String.valueOf(BATCH),
+                "hibernate.generate_statistics", "true",
+                "hibernate.loaded_classes", List.of(SequentialItem.class)
+        ));
+        try {
+            for (int round = 0; round < 2; round++) {
+                insert(emf, "one identifier per sequence call", i -> {
+                    SequentialItem item = new SequentialItem();
+                    item.setName("Item " + i);
+                    return item;
+                });
+                insert(emf, "pooled-lo block per thread", i -> {
+                    Item item = new Item();
+                    item.setName("Item " + i);
+                    item.setAuctionEnd(Helper.tomorrow());
+                    return item;
+                });
+            }
+        } finally {
+            emf.close();
+        }
+    }
+
+    private static void insert(EntityManagerFactory emf, String name, IntFunction<Object> entity)
+            throws Exception {
+        Statistics statistics = emf.unwrap(SessionFactory.class).getStatistics();
+        statistics.clear();
+        ExecutorService executor = Executors.newFixedThreadPool(THREADS);
+        long start = System.nanoTime();
+        try {
+            List<Future<?>> futures = new ArrayList<>();
+            for (int t = 0; t < THREADS; t++) {
+                futures.add(executor.submit(() -> {
+                    EntityManager em = emf.createEntityManager();
+                    try {
+                        for (int first = 0; first < ITEMS_PER_THREAD; first += BATCH) {
+                            em.getTransaction().begin();
+                            for (int i = first; i < first + BATCH; i++) {
+                                em.persist(entity.apply(i));
+                            }
+                            em.getTransaction().commit();
+                            em.clear();
+                        }
+                    } finally {
+                        em.close();
+                    }
+                }));
+            }
+            for (Future<?> future : futures) {
+                future.get();
+            }
+        } finally {
+            executor.shutdown();
+        }
+        long millis = (System.nanoTime() - start) / 1_000_000;
+        int inserts = THREADS * ITEMS_PER_THREAD;
+        System.out.printf("%-35s %6d ms %9.0f inserts/s %8.3f statements/insert%n",
+                name, millis, inserts * 1000.0 / millis,
+                (double) statistics.getPrepareStatementCount() / inserts);
+    }
+}
@@ -0,0 +1,103 @@
+/*
+ * ========================================================================
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * ========================================================================
+ */
+package com.manning.javapersistence.ch05;
+
+import com.manning.javapersistence.ch05.model.Item;
+import org.junit.jupiter.api.Test;
+
+import javax.persistence.EntityManager;
+import javax.persistence.EntityManagerFactory;
+import javax.persistence.Persistence;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.junit.jupiter.api.Assertions.assertAll;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+public class IdAllocationTest {
+
+    private static final int THREADS = 4;
+    private static final int ITEMS_PER_THREAD = 250;
+
+    @Test
+    public void allocateIdsPerThread() throws Exception {
+
+        EntityManagerFactory emf =
+                Persistence.createEntityManagerFactory("ch05.generator");
+        ExecutorService executor = Executors.newFixedThreadPool(THREADS);
+
+        try {
+            List<Future<List<Long>>> futures = new ArrayList<>();
+            for (int t = 0; t < THREADS; t++) {
+                futures.add(executor.submit(() -> storeItems(emf)));
+            }
+
+            Set<Long> allIds = new HashSet<>();
+            for (Future<List<Long>> future : futures) {
+                List<Long> ids = future.get();
+                allIds.addAll(ids);
+                /*
+                   All identifiers of a thread come from the block it reserved, so
+                   they are consecutive, even while the other threads insert.
+                 */
+                assertEquals(ITEMS_PER_THREAD - 1, ids.get(ids.size() - 1) - ids.get(0));
+            }
+
+            EntityManager em = emf.createEntityManager();
+            long count = em.createQuery("select count(i) from Item i", Long.class)
+                    .getSingleResult();
+            //SELECT COUNT(*) from ITEM
+            em.close();
+
+            assertAll(
+                    () -> assertEquals(THREADS * ITEMS_PER_THREAD, allIds.size()),
+                    () -> assertEquals(THREADS * ITEMS_PER_THREAD, count)
+            );
+        } finally {
+            executor.shutdown();
+            emf.close();
+        }
+    }
+
+    private static List<Long> storeItems(EntityManagerFactory emf) {
+        EntityManager em = emf.createEntityManager();
+        List<Long> ids = new ArrayList<>();
+        try {
+            em.getTransaction().begin();
+            for (int i = 0; i < ITEMS_PER_THREAD; i++) {
+                Item item = new Item();
+                item.setName("Item " + i);
+                item.setAuctionEnd(Helper.tomorrow());
+                em.persist(item);
+                ids.add(item.getId());
+            }
+            em.getTransaction().commit();
+        } finally {
+            em.close();
+        }
+        return ids;
+    }
+}
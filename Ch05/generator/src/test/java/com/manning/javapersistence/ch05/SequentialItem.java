@@ -0,0 +1,57 @@
+/*
+ * ========================================================================
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * ========================================================================
+ */
+package com.manning.javapersistence.ch05;
+
+import org.hibernate.annotations.GenericGenerator;
+import org.hibernate.annotations.Parameter;
+
+import javax.persistence.Entity;
+import javax.persistence.GeneratedValue;
+import javax.persistence.Id;
+
+/**
+ * An entity with the previous configuration of <code>ID_GENERATOR</code>, one
+ * sequence call for each identifier, to compare with in the benchmark.
+ */
+@Entity
+@GenericGenerator(
+        name = "SEQUENTIAL_ID_GENERATOR",
+        strategy = "enhanced-sequence",
+        parameters = {
+                @Parameter(name = "sequence_name", value = "JPWHSD_SEQUENTIAL_SEQUENCE"),
+                @Parameter(name = "initial_value", value = "1000")
+        })
+public class SequentialItem {
+
+    @Id
+    @GeneratedValue(generator = "SEQUENTIAL_ID_GENERATOR")
+    private Long id;
+
+    private String name;
+
+    public Long getId() {
+        return id;
+    }
+
+    public void setName(String name) {
+        this.name = name;
+    }
+}
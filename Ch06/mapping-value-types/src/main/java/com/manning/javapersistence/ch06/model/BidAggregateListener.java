@@ -0,0 +1,109 @@
+/*
+ * ========================================================================
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * ========================================================================
+ */
+package com.manning.javapersistence.ch06.model;
+
+import org.hibernate.Hibernate;
+import org.hibernate.engine.spi.SharedSessionContractImplementor;
+import org.hibernate.event.spi.PostDeleteEvent;
+import org.hibernate.event.spi.PostDeleteEventListener;
+import org.hibernate.event.spi.PostInsertEvent;
+import org.hibernate.event.spi.PostInsertEventListener;
+import org.hibernate.event.spi.PostUpdateEvent;
+import org.hibernate.event.spi.PostUpdateEventListener;
+import org.hibernate.persister.entity.AbstractEntityPersister;
+import org.hibernate.persister.entity.EntityPersister;
+
+import java.math.BigDecimal;
+import java.sql.PreparedStatement;
+
+/**
+ * Maintains the <code>BID_COUNT</code> and <code>BID_SUM</code> columns of an item
+ * when one of its bids is inserted, updated, or deleted, in the same flush as the
+ * change of the bid. A managed <code>Item</code> instance is updated as well.
+ */
+public class BidAggregateListener
+        implements PostInsertEventListener, PostUpdateEventListener, PostDeleteEventListener {
+
+    @Override
+    public void onPostInsert(PostInsertEvent event) {
+        if (event.getEntity() instanceof Bid bid) {
+            apply(event.getSession(), bid.getItem(), 1, bid.getAmount());
+        }
+    }
+
+    @Override
+    public void onPostUpdate(PostUpdateEvent event) {
+        if (!(event.getEntity() instanceof Bid bid)) {
+            return;
+        }
+        if (event.getOldState() == null) {
+            // A detached bid was updated, without its old state we recount the item
+            new BidAggregates(event.getSession()).reconcile(bid.getItem().getId());
+            return;
+        }
+        int itemIndex = event.getPersister().getEntityMetamodel().getPropertyIndex("item");
+        int amountIndex = event.getPersister().getEntityMetamodel().getPropertyIndex("amount");
+        Item oldItem = (Item) event.getOldState()[itemIndex];
+        BigDecimal oldAmount = (BigDecimal) event.getOldState()[amountIndex];
+        if (oldItem.getId().equals(bid.getItem().getId()) && oldAmount.compareTo(bid.getAmount()) == 0) {
+            return;
+        }
+        apply(event.getSession(), oldItem, -1, oldAmount.negate());
+        apply(event.getSession(), bid.getItem(), 1, bid.getAmount());
+    }
+
+    @Override
+    public void onPostDelete(PostDeleteEvent event) {
+        if (event.getEntity() instanceof Bid bid) {
+            apply(event.getSession(), bid.getItem(), -1, bid.getAmount().negate());
+        }
+    }
+
+    private void apply(SharedSessionContractImplementor session, Item item, long count, BigDecimal amount) {
+        /*
+           The flush is still running, so the update is executed on the JDBC connection
+           of the session instead of through a query, which could trigger another flush.
+         */
+        AbstractEntityPersister itemPersister = (AbstractEntityPersister)
+                session.getFactory().getMetamodel().entityPersister(Item.class);
+        String sql = "update " + itemPersister.getTableName() +
+                " set BID_COUNT = BID_COUNT + ?, BID_SUM = BID_SUM + ?" +
+                " where " + itemPersister.getIdentifierColumnNames()[0] + " = ?";
+        session.doWork(connection -> {
+            try (PreparedStatement statement = connection.prepareStatement(sql)) {
+                statement.setLong(1, count);
+                statement.setBigDecimal(2, amount);
+                statement.setLong(3, item.getId());
+                statement.executeUpdate();
+            }
+        });
+
+        // An item that isn't loaded yet will read the new values from the database
+        if (Hibernate.isInitialized(item)) {
+            ((Item) Hibernate.unproxy(item)).applyBidChange(count, amount);
+        }
+    }
+
+    @Override
+    public boolean requiresPostCommitHanding(EntityPersister persister) {
+        return false;
+    }
+}
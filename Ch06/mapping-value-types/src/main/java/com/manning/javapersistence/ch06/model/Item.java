@@ -28,6 +28,7 @@ import javax.persistence.CascadeType;
 import javax.persistence.Entity;
 import javax.validation.constraints.NotNull;
 import java.math.BigDecimal;
+import java.math.RoundingMode;
 import java.time.LocalDate;
 import java.time.LocalDateTime;
 import java.util.Collections;
@@ -70,10 +71,16 @@ public class Item {
     )
     private String shortDescription;
 
-    @Formula(
-            "(SELECT AVG(B.AMOUNT) FROM BID B WHERE B.ITEM_ID = ID)"
-    )
-    private BigDecimal averageBidAmount;
+    /*
+        Instead of a correlated <code>AVG()</code> subquery on every load, the number and sum
+        of the bids are stored with the item. The <code>BidAggregateListener</code> keeps them
+        up to date when bids change, they are never written by dirty checking.
+     */
+    @Column(name = "BID_COUNT", nullable = false, updatable = false)
+    private long bidCount;
+
+    @Column(name = "BID_SUM", nullable = false, updatable = false, precision = 19, scale = 2)
+    private BigDecimal bidSum = BigDecimal.ZERO;
 
     @Column(name = "IMPERIALWEIGHT")
     @ColumnTransformer(
@@ -95,6 +102,10 @@ public class Item {
     )
     private BigDecimal initialPrice;
 
+    public Long getId() {
+        return id;
+    }
+
     /* 
         Hibernate will call <code>getName()</code> and <code>setName()</code> when loading and storing items.
     */
@@ -131,8 +142,23 @@ public class Item {
         return shortDescription;
     }
 
+    public long getBidCount() {
+        return bidCount;
+    }
+
+    public BigDecimal getBidSum() {
+        return bidSum;
+    }
+
     public BigDecimal getAverageBidAmount() {
-        return averageBidAmount;
+        // Like AVG() in MySQL, with four more decimal places than the amounts
+        return bidCount == 0 ? null :
+                bidSum.divide(BigDecimal.valueOf(bidCount), bidSum.scale() + 4, RoundingMode.HALF_UP);
+    }
+
+    void applyBidChange(long count, BigDecimal amount) {
+        bidCount += count;
+        bidSum = bidSum.add(amount);
     }
 
     public double getMetricWeight() {
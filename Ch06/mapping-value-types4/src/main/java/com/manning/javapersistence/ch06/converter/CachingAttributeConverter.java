@@ -0,0 +1,40 @@
+package com.manning.javapersistence.ch06.converter;
+
+import javax.persistence.AttributeConverter;
+import java.util.function.Function;
+
+/**
+ * Base class for converters of immutable value types: every distinct database
+ * value is converted once, and rows with the same value share one instance of
+ * the entity attribute. The converted values are kept in a bounded
+ * {@link StripedLruCache}, so a large value space can't exhaust the heap.
+ * <p>
+ * Only use this for immutable classes: all entities loaded with the same database
+ * value, in all sessions, reference the same instance.
+ */
+public abstract class CachingAttributeConverter<X, Y>
+        implements AttributeConverter<X, Y> {
+
+    private final StripedLruCache<Y, X> cache;
+    private final Function<Y, X> create = this::createEntityAttribute;
+
+    protected CachingAttributeConverter(int maximumSize) {
+        this.cache = new StripedLruCache<>(maximumSize);
+    }
+
+    @Override
+    public final X convertToEntityAttribute(Y dbData) {
+        if (dbData == null)
+            return null;
+        return cache.computeIfAbsent(dbData, create);
+    }
+
+    /**
+     * Creates the entity attribute for a database value that isn't cached.
+     */
+    protected abstract X createEntityAttribute(Y dbData);
+
+    public StripedLruCache<Y, X> getCache() {
+        return cache;
+    }
+}
@@ -0,0 +1,24 @@
+package com.manning.javapersistence.ch06.converter;
+
+import java.io.Serializable;
+
+/**
+ * The second-level cache representation of a <code>MonetaryAmount</code>: the
+ * unscaled value and scale of the amount, and the ordinal of the currency in the
+ * {@link CurrencyTable}. Amounts whose unscaled value doesn't fit into a
+ * <code>long</code> are cached as <code>MonetaryAmount</code> instead.
+ */
+final class CompactMonetaryAmount implements Serializable {
+
+    private static final long serialVersionUID = 1L;
+
+    final long unscaledValue;
+    final int scale;
+    final short currency;
+
+    CompactMonetaryAmount(long unscaledValue, int scale, short currency) {
+        this.unscaledValue = unscaledValue;
+        this.scale = scale;
+        this.currency = currency;
+    }
+}
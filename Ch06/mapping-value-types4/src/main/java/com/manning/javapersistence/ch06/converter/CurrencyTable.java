@@ -0,0 +1,56 @@
+package com.manning.javapersistence.ch06.converter;
+
+import java.util.Currency;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Resolves <code>Currency</code> instances once, when the class is loaded, so
+ * reading a row or a cache entry is a map or array lookup instead of a call to
+ * <code>Currency.getInstance()</code>. The ordinal of a currency is its ISO 4217
+ * numeric code, which is the same on every JVM sharing a cache region.
+ */
+final class CurrencyTable {
+
+    static final int SIZE = 1000;
+
+    private static final Currency[] BY_ORDINAL = new Currency[SIZE];
+    private static final Map<String, Currency> BY_CODE = new HashMap<>();
+
+    static {
+        for (Currency currency : Currency.getAvailableCurrencies()) {
+            BY_CODE.put(currency.getCurrencyCode(), currency);
+            int numericCode = currency.getNumericCode();
+            // Historic currencies may share a numeric code, these are only stored by code
+            if (numericCode > 0 && numericCode < SIZE && BY_ORDINAL[numericCode] == null) {
+                BY_ORDINAL[numericCode] = currency;
+            }
+        }
+    }
+
+    private CurrencyTable() {
+    }
+
+    static Currency forCode(String code) {
+        Currency currency = BY_CODE.get(code);
+        return currency != null ? currency : Currency.getInstance(code);
+    }
+
+    /**
+     * Returns the ordinal of the given currency, or <code>-1</code> if it
+     * can't be represented by an ordinal.
+     */
+    static int ordinal(Currency currency) {
+        int numericCode = currency.getNumericCode();
+        return numericCode > 0 && numericCode < SIZE && BY_ORDINAL[numericCode] == currency
+                ? numericCode : -1;
+    }
+
+    static Currency forOrdinal(int ordinal) {
+        Currency currency = ordinal >= 0 && ordinal < SIZE ? BY_ORDINAL[ordinal] : null;
+        if (currency == null) {
+            throw new IllegalArgumentException("Unknown currency ordinal: " + ordinal);
+        }
+        return currency;
+    }
+}
@@ -0,0 +1,12 @@
+package com.manning.javapersistence.ch06.converter;
+
+/**
+ * A source of exchange rates, asked for a complete snapshot whenever the
+ * {@link ExchangeRateTable} is refreshed. A provider may be slow, it's never
+ * called while Hibernate writes rows.
+ */
+@FunctionalInterface
+public interface ExchangeRateProvider {
+
+    RateSnapshot loadRates();
+}
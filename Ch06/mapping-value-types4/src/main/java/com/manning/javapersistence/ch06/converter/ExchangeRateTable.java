@@ -0,0 +1,114 @@
+package com.manning.javapersistence.ch06.converter;
+
+import com.manning.javapersistence.ch06.model.MonetaryAmount;
+import org.hibernate.action.spi.AfterTransactionCompletionProcess;
+import org.hibernate.engine.spi.SessionImplementor;
+import org.hibernate.engine.spi.SharedSessionContractImplementor;
+
+import java.util.Currency;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * The in-memory exchange rates used by {@link MonetaryAmountUserType}. Rates are
+ * loaded from an {@link ExchangeRateProvider} on {@link #refresh()} and published
+ * by swapping one immutable {@link RateSnapshot}, so a conversion never waits for
+ * the provider and never sees half of an update.
+ * <p>
+ * The first conversion in a transaction pins the current snapshot to the session,
+ * and all rows written until the transaction completes, in any number of flushes,
+ * are converted with the same rates.
+ */
+public class ExchangeRateTable {
+
+    private static volatile ExchangeRateTable defaultTable =
+            new ExchangeRateTable(RateSnapshot::example);
+
+    private final ExchangeRateProvider provider;
+    private final AtomicReference<RateSnapshot> current = new AtomicReference<>();
+    private final Map<SharedSessionContractImplementor, RateSnapshot> pinned = new ConcurrentHashMap<>();
+
+    private final LongAdder conversions = new LongAdder();
+    private final LongAdder conversionNanos = new LongAdder();
+    private final LongAdder refreshes = new LongAdder();
+
+    public ExchangeRateTable(ExchangeRateProvider provider) {
+        this.provider = provider;
+        refresh();
+    }
+
+    /**
+     * The table used by all <code>MonetaryAmountUserType</code> instances.
+     */
+    public static ExchangeRateTable getDefault() {
+        return defaultTable;
+    }
+
+    public static void setDefault(ExchangeRateTable table) {
+        defaultTable = table;
+    }
+
+    /**
+     * Loads the rates from the provider and makes them the current snapshot.
+     * Transactions that already pinned a snapshot keep converting with it.
+     */
+    public RateSnapshot refresh() {
+        RateSnapshot snapshot = provider.loadRates();
+        current.set(snapshot);
+        refreshes.increment();
+        return snapshot;
+    }
+
+    public RateSnapshot snapshot() {
+        return current.get();
+    }
+
+    /**
+     * Returns the snapshot pinned to the transaction of the given session,
+     * pinning the current one if this is the first conversion in the transaction.
+     * Without a session or transaction, the current snapshot is returned.
+     */
+    public RateSnapshot snapshotFor(SharedSessionContractImplementor session) {
+        if (!(session instanceof SessionImplementor) || !session.isTransactionInProgress())
+            return current.get();
+        RateSnapshot snapshot = pinned.get(session);
+        if (snapshot == null) {
+            snapshot = current.get();
+            pinned.put(session, snapshot);
+            ((SessionImplementor) session).getActionQueue().registerProcess(
+                    (AfterTransactionCompletionProcess) (success, s) -> pinned.remove(session)
+            );
+        }
+        return snapshot;
+    }
+
+    public MonetaryAmount convert(RateSnapshot snapshot, MonetaryAmount amount, Currency toCurrency) {
+        long start = System.nanoTime();
+        MonetaryAmount converted = new MonetaryAmount(
+                amount.getValue().multiply(snapshot.rate(amount.getCurrency(), toCurrency)),
+                toCurrency
+        );
+        conversionNanos.add(System.nanoTime() - start);
+        conversions.increment();
+        return converted;
+    }
+
+    public long getConversionCount() {
+        return conversions.sum();
+    }
+
+    public long getConversionNanos() {
+        return conversionNanos.sum();
+    }
+
+    public double getAverageConversionNanos() {
+        long count = conversions.sum();
+        return count == 0 ? 0 : (double) conversionNanos.sum() / count;
+    }
+
+    public long getRefreshCount() {
+        return refreshes.sum();
+    }
+}
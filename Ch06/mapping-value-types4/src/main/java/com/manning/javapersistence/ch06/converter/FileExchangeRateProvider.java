@@ -0,0 +1,59 @@
+package com.manning.javapersistence.ch06.converter;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.io.UncheckedIOException;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Properties;
+
+/**
+ * Loads exchange rates from a local properties file, one rate per line:
+ *
+ * <pre>
+ * USD/EUR = 0.92
+ * EUR/USD = 1.08
+ * default = 1
+ * </pre>
+ *
+ * The optional <code>default</code> rate applies to all pairs not listed.
+ */
+public class FileExchangeRateProvider implements ExchangeRateProvider {
+
+    private static final String DEFAULT_RATE = "default";
+
+    private final Path file;
+
+    public FileExchangeRateProvider(Path file) {
+        this.file = file;
+    }
+
+    @Override
+    public RateSnapshot loadRates() {
+        Properties properties = new Properties();
+        try (Reader reader = Files.newBufferedReader(file, StandardCharsets.UTF_8)) {
+            properties.load(reader);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Can't read exchange rates from " + file, e);
+        }
+
+        RateSnapshot.Builder builder = RateSnapshot.builder();
+        for (String pair : properties.stringPropertyNames()) {
+            BigDecimal rate = new BigDecimal(properties.getProperty(pair).trim());
+            if (DEFAULT_RATE.equals(pair)) {
+                builder.defaultRate(rate);
+                continue;
+            }
+            String[] currencies = pair.split("/");
+            if (currencies.length != 2)
+                throw new IllegalArgumentException(
+                        "Exchange rate must be given as FROM/TO: " + pair
+                );
+            builder.rate(CurrencyTable.forCode(currencies[0].trim()),
+                    CurrencyTable.forCode(currencies[1].trim()), rate);
+        }
+        return builder.build();
+    }
+}
@@ -9,6 +9,7 @@ import org.hibernate.usertype.DynamicParameterizedType;
 
 import java.io.Serializable;
 import java.math.BigDecimal;
+import java.math.BigInteger;
 import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.SQLException;
@@ -63,27 +64,44 @@ public class MonetaryAmountUserType
 
     /**
      * Hibernate calls <code>disassemble</code> when it stores a value in the global shared second-level
-     * cache. We need to return a <code>Serializable</code> representation. For <code>MonetaryAmount</code>,
-     * a <code>String</code> representation is an easy solution. Or, because <code>MonetaryAmount</code> is actually
-     * <code>Serializable</code>, we could return it directly.
+     * cache. We need to return a <code>Serializable</code> representation. A <code>String</code> representation
+     * would be an easy solution, but parsing it again on every cache hit is expensive. We store the unscaled
+     * value, the scale, and the currency ordinal instead. Amounts that don't fit into this compact form are
+     * stored directly, because <code>MonetaryAmount</code> is actually <code>Serializable</code>.
      */
     @Override
     public Serializable disassemble(Object value,
                                     SharedSessionContractImplementor session) {
-        return value.toString();
+        MonetaryAmount amount = (MonetaryAmount) value;
+        int currency = CurrencyTable.ordinal(amount.getCurrency());
+        BigInteger unscaledValue = amount.getValue().unscaledValue();
+        if (currency < 0 || unscaledValue.bitLength() > 63)
+            return amount;
+        return new CompactMonetaryAmount(
+                unscaledValue.longValue(), amount.getValue().scale(), (short) currency
+        );
     }
 
     /**
      * Hibernate calls this method when it reads the serialized
      * representation from the global shared second-level cache. We create a
-     * <code>MonetaryAmount</code> instance from the <code>String</code>
-     * representation. Or, if we have stored a serialized <code>MonetaryAmount</code>,
-     * we could return it directly.
+     * <code>MonetaryAmount</code> instance from the compact representation,
+     * without parsing and with a shared instance for common amounts. Entries
+     * stored as a <code>String</code> by an earlier version are still accepted.
      */
     @Override
     public Object assemble(Serializable cached,
                            SharedSessionContractImplementor session, Object owner) {
-        return MonetaryAmount.fromString((String) cached);
+        if (cached instanceof CompactMonetaryAmount) {
+            CompactMonetaryAmount compact = (CompactMonetaryAmount) cached;
+            return MonetaryAmounts.of(
+                    compact.unscaledValue, compact.scale,
+                    CurrencyTable.forOrdinal(compact.currency)
+            );
+        }
+        if (cached instanceof String)
+            return MonetaryAmount.fromString((String) cached);
+        return cached;
     }
 
     /**
@@ -116,7 +134,9 @@ public class MonetaryAmountUserType
      * Called to read the <code>ResultSet</code>, when a
      * <code>MonetaryAmount</code> value has to be retrieved from the database.
      * We take the <code>amount</code> and <code>currency</code> values as given
-     * in the query result, and create a new instance of <code>MonetaryAmount</code>.
+     * in the query result, and create a new instance of <code>MonetaryAmount</code>,
+     * or reuse the shared instance of a common amount. The currency is resolved
+     * from a table built once, not through <code>Currency.getInstance()</code>.
      */
 
     @Override
@@ -129,8 +149,8 @@ public class MonetaryAmountUserType
         if (resultSet.wasNull())
             return null;
         Currency currency =
-                Currency.getInstance(resultSet.getString(names[1]));
-        return new MonetaryAmount(amount, currency);
+                CurrencyTable.forCode(resultSet.getString(names[1]));
+        return MonetaryAmounts.of(amount, currency);
     }
 
     /**
@@ -156,8 +176,11 @@ public class MonetaryAmountUserType
                     StandardBasicTypes.CURRENCY.sqlType());
         } else {
             MonetaryAmount amount = (MonetaryAmount) value;
-            // When saving, convert to target currency
-            MonetaryAmount dbAmount = convert(amount, convertTo);
+            // When saving, convert to target currency, with the rates pinned for this transaction
+            ExchangeRateTable exchangeRates = ExchangeRateTable.getDefault();
+            MonetaryAmount dbAmount = exchangeRates.convert(
+                    exchangeRates.snapshotFor(session), amount, convertTo
+            );
             statement.setBigDecimal(index, dbAmount.getValue());
             statement.setString(index + 1, convertTo.getCurrencyCode());
         }
@@ -165,17 +188,17 @@ public class MonetaryAmountUserType
 
     /**
      * Here we can implement whatever currency conversion routine
-     * we need. For the sake of the example, we simply double the value so we
-     * can easily test if conversion was successful. You'll have to replace this
-     * code with a real currency converter in a real application. It's not a
-     * method of the Hibernate <code>UserType</code> API.
+     * we need. The rates come from the in-memory {@link ExchangeRateTable},
+     * never from a live rate source for each row. For the sake of the example,
+     * the default table simply doubles the value so we can easily test if
+     * conversion was successful. You'll have to install a table with real
+     * rates in a real application. It's not a method of the Hibernate
+     * <code>UserType</code> API.
      */
     public MonetaryAmount convert(MonetaryAmount amount,
                                      Currency toCurrency) {
-        return new MonetaryAmount(
-                amount.getValue().multiply(new BigDecimal(2)),
-                toCurrency
-        );
+        ExchangeRateTable exchangeRates = ExchangeRateTable.getDefault();
+        return exchangeRates.convert(exchangeRates.snapshot(), amount, toCurrency);
     }
 
     @Override
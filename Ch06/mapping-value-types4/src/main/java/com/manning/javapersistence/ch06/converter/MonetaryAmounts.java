@@ -0,0 +1,66 @@
+package com.manning.javapersistence.ch06.converter;
+
+import com.manning.javapersistence.ch06.model.MonetaryAmount;
+
+import java.math.BigDecimal;
+import java.util.Currency;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * Creates <code>MonetaryAmount</code> instances for the user type, sharing one
+ * instance for each common amount. Amounts with two decimal places, the scale of
+ * the amount columns, are interned in a small direct-mapped table: an amount
+ * replaces whatever was in its slot, so the amounts read most often stay shared
+ * while the table never grows. Sharing is safe because <code>MonetaryAmount</code>
+ * is immutable.
+ */
+final class MonetaryAmounts {
+
+    static final int INTERNED_SCALE = 2;
+    static final int SLOTS = 4096;
+
+    // Up to this precision, a scale 2 amount converts to and from a double exactly
+    private static final int MAX_PRECISION = 15;
+    private static final long MAX_UNSCALED_VALUE = 999_999_999_999_999L;
+
+    private static final AtomicReferenceArray<MonetaryAmount> INTERNED =
+            new AtomicReferenceArray<>(SLOTS);
+
+    private MonetaryAmounts() {
+    }
+
+    static MonetaryAmount of(BigDecimal value, Currency currency) {
+        if (value.scale() != INTERNED_SCALE || value.precision() > MAX_PRECISION)
+            return new MonetaryAmount(value, currency);
+        return intern(unscaledValue(value), value, currency);
+    }
+
+    static MonetaryAmount of(long unscaledValue, int scale, Currency currency) {
+        if (scale != INTERNED_SCALE || Math.abs(unscaledValue) > MAX_UNSCALED_VALUE)
+            return new MonetaryAmount(BigDecimal.valueOf(unscaledValue, scale), currency);
+        return intern(unscaledValue, null, currency);
+    }
+
+    private static MonetaryAmount intern(long unscaledValue, BigDecimal value, Currency currency) {
+        long hash = (unscaledValue * 31 + currency.getNumericCode()) * 0x9E3779B97F4A7C15L;
+        int slot = (int) (hash >>> (64 - Integer.numberOfTrailingZeros(SLOTS)));
+        MonetaryAmount amount = INTERNED.get(slot);
+        if (amount != null && amount.getCurrency() == currency
+                && unscaledValue(amount.getValue()) == unscaledValue)
+            return amount;
+        amount = new MonetaryAmount(
+                value != null ? value : BigDecimal.valueOf(unscaledValue, INTERNED_SCALE), currency
+        );
+        INTERNED.lazySet(slot, amount);
+        return amount;
+    }
+
+    /*
+        Unlike <code>BigDecimal#unscaledValue()</code>, this doesn't allocate
+        a <code>BigInteger</code>. Only called for amounts of scale 2 within
+        <code>MAX_PRECISION</code>.
+     */
+    private static long unscaledValue(BigDecimal value) {
+        return Math.round(value.doubleValue() * 100);
+    }
+}
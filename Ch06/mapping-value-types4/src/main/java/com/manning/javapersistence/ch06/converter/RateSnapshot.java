@@ -0,0 +1,90 @@
+package com.manning.javapersistence.ch06.converter;
+
+import java.math.BigDecimal;
+import java.time.Instant;
+import java.util.Currency;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * An immutable set of exchange rates, loaded at one point in time. Rates are
+ * looked up by source and target currency; a pair without an explicit rate uses
+ * the default rate, if the snapshot has one. An amount keeps its value when converted
+ * to its own currency, except with the {@link #example()} rates.
+ */
+public final class RateSnapshot {
+
+    private final Map<Currency, Map<Currency, BigDecimal>> rates;
+    private final BigDecimal defaultRate;
+    private final boolean identity;
+    private final Instant loadedOn;
+
+    private RateSnapshot(Map<Currency, Map<Currency, BigDecimal>> rates,
+                         BigDecimal defaultRate, boolean identity, Instant loadedOn) {
+        this.rates = rates;
+        this.defaultRate = defaultRate;
+        this.identity = identity;
+        this.loadedOn = loadedOn;
+    }
+
+    /**
+     * The rates of the book example: every amount is doubled, even if it already
+     * has the target currency, so it's easy to test if conversion was successful.
+     */
+    public static RateSnapshot example() {
+        return new RateSnapshot(Map.of(), new BigDecimal(2), false, Instant.now());
+    }
+
+    public static Builder builder() {
+        return new Builder();
+    }
+
+    public BigDecimal rate(Currency from, Currency to) {
+        if (identity && from.equals(to))
+            return BigDecimal.ONE;
+        Map<Currency, BigDecimal> fromRates = rates.get(from);
+        BigDecimal rate = fromRates != null ? fromRates.get(to) : null;
+        if (rate == null)
+            rate = defaultRate;
+        if (rate == null)
+            throw new IllegalArgumentException(
+                    "No exchange rate from " + from + " to " + to
+            );
+        return rate;
+    }
+
+    public Instant getLoadedOn() {
+        return loadedOn;
+    }
+
+    public static final class Builder {
+
+        private final Map<Currency, Map<Currency, BigDecimal>> rates = new HashMap<>();
+        private BigDecimal defaultRate;
+
+        private Builder() {
+        }
+
+        public Builder rate(Currency from, Currency to, BigDecimal rate) {
+            if (rate.signum() <= 0)
+                throw new IllegalArgumentException("rate must be positive: " + rate);
+            if (from.equals(to))
+                throw new IllegalArgumentException("No rate can be set from " + from + " to itself");
+            rates.computeIfAbsent(from, c -> new HashMap<>()).put(to, rate);
+            return this;
+        }
+
+        public Builder defaultRate(BigDecimal defaultRate) {
+            if (defaultRate.signum() <= 0)
+                throw new IllegalArgumentException("defaultRate must be positive: " + defaultRate);
+            this.defaultRate = defaultRate;
+            return this;
+        }
+
+        public RateSnapshot build() {
+            Map<Currency, Map<Currency, BigDecimal>> copy = new HashMap<>();
+            rates.forEach((from, toRates) -> copy.put(from, Map.copyOf(toRates)));
+            return new RateSnapshot(Map.copyOf(copy), defaultRate, true, Instant.now());
+        }
+    }
+}
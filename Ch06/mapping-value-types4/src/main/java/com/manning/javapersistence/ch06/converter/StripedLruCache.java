@@ -0,0 +1,106 @@
+package com.manning.javapersistence.ch06.converter;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Function;
+
+/**
+ * A bounded cache, split into stripes that each keep their entries in
+ * least-recently-used order. A lookup only locks the stripe of its key, so
+ * concurrent sessions reading different values rarely wait for each other.
+ * When a stripe is full, its least recently used entry is evicted.
+ */
+public class StripedLruCache<K, V> {
+
+    private final Stripe<K, V>[] stripes;
+    private final int mask;
+
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+
+    public StripedLruCache(int maximumSize) {
+        this(maximumSize, 16);
+    }
+
+    @SuppressWarnings("unchecked")
+    public StripedLruCache(int maximumSize, int concurrencyLevel) {
+        if (maximumSize <= 0)
+            throw new IllegalArgumentException("maximumSize must be positive: " + maximumSize);
+        if (concurrencyLevel <= 0)
+            throw new IllegalArgumentException("concurrencyLevel must be positive: " + concurrencyLevel);
+        int stripeCount = Integer.highestOneBit(Math.min(concurrencyLevel, maximumSize));
+        int stripeSize = (maximumSize + stripeCount - 1) / stripeCount;
+        stripes = new Stripe[stripeCount];
+        for (int i = 0; i < stripeCount; i++) {
+            stripes[i] = new Stripe<>(stripeSize);
+        }
+        mask = stripeCount - 1;
+    }
+
+    /**
+     * Returns the cached value of the key, or computes, caches, and returns it.
+     * The function is called while the stripe is locked, so it should be cheap,
+     * like creating an immutable value object.
+     */
+    public V computeIfAbsent(K key, Function<? super K, ? extends V> function) {
+        Stripe<K, V> stripe = stripeFor(key);
+        synchronized (stripe) {
+            V value = stripe.get(key);
+            if (value != null) {
+                hits.increment();
+                return value;
+            }
+            misses.increment();
+            value = function.apply(key);
+            stripe.put(key, value);
+            return value;
+        }
+    }
+
+    public int size() {
+        int size = 0;
+        for (Stripe<K, V> stripe : stripes) {
+            synchronized (stripe) {
+                size += stripe.size();
+            }
+        }
+        return size;
+    }
+
+    public void clear() {
+        for (Stripe<K, V> stripe : stripes) {
+            synchronized (stripe) {
+                stripe.clear();
+            }
+        }
+    }
+
+    public long getHitCount() {
+        return hits.sum();
+    }
+
+    public long getMissCount() {
+        return misses.sum();
+    }
+
+    private Stripe<K, V> stripeFor(K key) {
+        int hash = key.hashCode();
+        return stripes[(hash ^ (hash >>> 16)) & mask];
+    }
+
+    private static class Stripe<K, V> extends LinkedHashMap<K, V> {
+
+        private final int maximumSize;
+
+        Stripe(int maximumSize) {
+            super(16, 0.75f, true);
+            this.maximumSize = maximumSize;
+        }
+
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<K, V> eldest) {
+            return size() > maximumSize;
+        }
+    }
+}
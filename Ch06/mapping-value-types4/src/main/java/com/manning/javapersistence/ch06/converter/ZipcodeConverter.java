@@ -4,12 +4,19 @@ import com.manning.javapersistence.ch06.model.GermanZipcode;
 import com.manning.javapersistence.ch06.model.SwissZipcode;
 import com.manning.javapersistence.ch06.model.Zipcode;
 
-import javax.persistence.AttributeConverter;
 import javax.persistence.Converter;
 
+/*
+    German and Swiss zipcodes are at most 5 digits, so this cache can hold every
+    zipcode in use, and all users in the same city share one <code>Zipcode</code>.
+ */
 @Converter
 public class ZipcodeConverter
-        implements AttributeConverter<Zipcode, String> {
+        extends CachingAttributeConverter<Zipcode, String> {
+
+    public ZipcodeConverter() {
+        super(100_000);
+    }
 
     @Override
     public String convertToDatabaseColumn(Zipcode attribute) {
@@ -17,7 +24,7 @@ public class ZipcodeConverter
     }
 
     @Override
-    public Zipcode convertToEntityAttribute(String s) {
+    protected Zipcode createEntityAttribute(String s) {
         if (s.length() == 5)
             return new GermanZipcode(s);
         else if (s.length() == 4)
@@ -0,0 +1,123 @@
+/*
+ * ========================================================================
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * ========================================================================
+ */
+package com.manning.javapersistence.ch06.model;
+
+import org.hibernate.Session;
+import org.hibernate.engine.spi.SessionImplementor;
+import org.hibernate.persister.entity.AbstractEntityPersister;
+
+import javax.persistence.EntityManager;
+import java.math.BigDecimal;
+import java.sql.PreparedStatement;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.stream.Collectors;
+
+/**
+ * Checks the maintained <code>BID_COUNT</code> and <code>BID_SUM</code> columns
+ * of items against their bids, and recounts them where they differ. They can
+ * drift when bids are changed without the {@link BidAggregateListener}, for
+ * example by a bulk statement or another application.
+ */
+public class BidAggregates {
+
+    public record Inconsistency(Long itemId,
+                                long bidCount, BigDecimal bidSum,
+                                long actualBidCount, BigDecimal actualBidSum) {
+    }
+
+    private final EntityManager em;
+
+    public BidAggregates(EntityManager em) {
+        this.em = em;
+    }
+
+    public List<Inconsistency> check() {
+        List<Object[]> rows = em.createQuery(
+                "select i.id, i.bidCount, i.bidSum, count(b.id), coalesce(sum(b.amount), 0) " +
+                        "from Item i left join i.bids b " +
+                        "group by i.id, i.bidCount, i.bidSum " +
+                        "having i.bidCount <> count(b.id) or i.bidSum <> coalesce(sum(b.amount), 0) " +
+                        "order by i.id", Object[].class)
+                .getResultList();
+        List<Inconsistency> inconsistencies = new ArrayList<>(rows.size());
+        for (Object[] row : rows) {
+            inconsistencies.add(new Inconsistency(
+                    (Long) row[0],
+                    (Long) row[1], (BigDecimal) row[2],
+                    ((Number) row[3]).longValue(), new BigDecimal(row[4].toString())
+            ));
+        }
+        return inconsistencies;
+    }
+
+    /**
+     * Recounts all inconsistent items, returns how many were corrected. Items
+     * already loaded in the persistence context keep their old values until
+     * they are refreshed.
+     */
+    public int reconcile() {
+        return reconcile(check().stream()
+                .map(Inconsistency::itemId)
+                .collect(Collectors.toList()));
+    }
+
+    public int reconcile(Long itemId) {
+        return reconcile(List.of(itemId));
+    }
+
+    /*
+        Executed on the JDBC connection of the session, so it can also be called
+        by the <code>BidAggregateListener</code> while a flush is running.
+     */
+    private int reconcile(Collection<Long> itemIds) {
+        if (itemIds.isEmpty()) {
+            return 0;
+        }
+        Session session = em.unwrap(Session.class);
+        AbstractEntityPersister itemPersister = (AbstractEntityPersister)
+                session.unwrap(SessionImplementor.class).getFactory().getMetamodel().entityPersister(Item.class);
+        AbstractEntityPersister bidPersister = (AbstractEntityPersister)
+                session.unwrap(SessionImplementor.class).getFactory().getMetamodel().entityPersister(Bid.class);
+        String item = itemPersister.getTableName();
+        String itemId = itemPersister.getIdentifierColumnNames()[0];
+        String bids = " from " + bidPersister.getTableName() + " b where b." +
+                bidPersister.getPropertyColumnNames("item")[0] + " = " + item + "." + itemId;
+        String sql = "update " + item +
+                " set BID_COUNT = (select count(*)" + bids + ")," +
+                " BID_SUM = (select coalesce(sum(b." + bidPersister.getPropertyColumnNames("amount")[0] + "), 0)" + bids + ")" +
+                " where " + itemId + " = ?";
+        return session.doReturningWork(connection -> {
+            try (PreparedStatement statement = connection.prepareStatement(sql)) {
+                for (Long id : itemIds) {
+                    statement.setLong(1, id);
+                    statement.addBatch();
+                }
+                int updated = 0;
+                for (int count : statement.executeBatch()) {
+                    updated += Math.max(count, 0);
+                }
+                return updated;
+            }
+        });
+    }
+}
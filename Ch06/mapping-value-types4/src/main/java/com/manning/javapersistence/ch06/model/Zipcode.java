@@ -4,7 +4,7 @@ import java.util.Objects;
 
 public abstract class Zipcode {
 
-    private String value;
+    private final String value;
 
     public Zipcode(String value) {
         this.value = value;
@@ -0,0 +1,136 @@
+/*
+ * ========================================================================
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * ========================================================================
+ */
+package com.manning.javapersistence.ch06;
+
+import com.manning.javapersistence.ch06.model.Bid;
+import com.manning.javapersistence.ch06.model.BidAggregates;
+import com.manning.javapersistence.ch06.model.Item;
+import com.manning.javapersistence.ch06.model.MonetaryAmount;
+import org.junit.jupiter.api.Test;
+
+import javax.persistence.EntityManager;
+import javax.persistence.EntityManagerFactory;
+import javax.persistence.Persistence;
+import java.math.BigDecimal;
+import java.util.Currency;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class BidAggregatesTest {
+
+    @Test
+    public void maintainBidAggregates() {
+
+        EntityManagerFactory emf =
+                Persistence.createEntityManagerFactory("ch06.mapping_value_types");
+        EntityManager em = emf.createEntityManager();
+
+        try {
+            em.getTransaction().begin();
+            Item item = item("Some Item");
+            Item otherItem = item("Other Item");
+            em.persist(item);
+            em.persist(otherItem);
+            Bid first = bid(item, "10.00");
+            Bid second = bid(item, "20.00");
+            Bid third = bid(item, "30.00");
+            em.persist(first);
+            em.persist(second);
+            em.persist(third);
+            em.flush();
+
+            // The managed item is updated by the flush
+            assertEquals(3, item.getBidCount());
+            em.getTransaction().commit();
+            em.clear();
+
+            em.getTransaction().begin();
+            // select ... BID_COUNT, BID_SUM ... from ITEM where ID = ?
+            Item loaded = em.find(Item.class, item.getId());
+            assertAll(
+                    () -> assertEquals(3, loaded.getBidCount()),
+                    () -> assertEquals(new BigDecimal("60.00"), loaded.getBidSum()),
+                    () -> assertEquals(new BigDecimal("20.000000"), loaded.getAverageBidAmount())
+            );
+
+            // A changed amount, a bid moved to another item, and a removed bid
+            em.find(Bid.class, first.getId()).setAmount(new BigDecimal("15.00"));
+            em.find(Bid.class, second.getId()).setItem(em.getReference(Item.class, otherItem.getId()));
+            em.remove(em.find(Bid.class, third.getId()));
+            em.getTransaction().commit();
+            em.clear();
+
+            em.getTransaction().begin();
+            Item changed = em.find(Item.class, item.getId());
+            Item other = em.find(Item.class, otherItem.getId());
+            assertAll(
+                    () -> assertEquals(1, changed.getBidCount()),
+                    () -> assertEquals(new BigDecimal("15.00"), changed.getBidSum()),
+                    () -> assertEquals(1, other.getBidCount()),
+                    () -> assertEquals(new BigDecimal("20.00"), other.getBidSum()),
+                    () -> assertTrue(new BidAggregates(em).check().isEmpty())
+            );
+            em.getTransaction().commit();
+            em.clear();
+
+            em.getTransaction().begin();
+            // Bulk statements bypass the listener, the checker finds and repairs the drift
+            em.createQuery("delete from Bid b where b.item.id = :id")
+                    .setParameter("id", otherItem.getId())
+                    .executeUpdate();
+            BidAggregates aggregates = new BidAggregates(em);
+            List<BidAggregates.Inconsistency> inconsistencies = aggregates.check();
+            assertAll(
+                    () -> assertEquals(1, inconsistencies.size()),
+                    () -> assertEquals(otherItem.getId(), inconsistencies.get(0).itemId()),
+                    () -> assertEquals(1, inconsistencies.get(0).bidCount()),
+                    () -> assertEquals(0, inconsistencies.get(0).actualBidCount())
+            );
+            assertEquals(1, aggregates.reconcile());
+            assertTrue(aggregates.check().isEmpty());
+            em.getTransaction().commit();
+            em.clear();
+
+            assertNull(em.find(Item.class, otherItem.getId()).getAverageBidAmount());
+        } finally {
+            em.close();
+            emf.close();
+        }
+    }
+
+    private static Item item(String name) {
+        Item item = new Item();
+        item.setName(name);
+        item.setMetricWeight(2);
+        item.setInitialPrice(new MonetaryAmount(new BigDecimal("1.00"), Currency.getInstance("USD")));
+        item.setBuyNowPrice(new MonetaryAmount(new BigDecimal("1.00"), Currency.getInstance("USD")));
+        item.setDescription("descriptiondescription");
+        return item;
+    }
+
+    private static Bid bid(Item item, String amount) {
+        Bid bid = new Bid();
+        bid.setItem(item);
+        bid.setAmount(new BigDecimal(amount));
+        return bid;
+    }
+}
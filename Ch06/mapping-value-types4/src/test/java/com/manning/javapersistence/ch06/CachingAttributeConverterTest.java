@@ -0,0 +1,70 @@
+/*
+ * ========================================================================
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * ========================================================================
+ */
+package com.manning.javapersistence.ch06;
+
+import com.manning.javapersistence.ch06.converter.StripedLruCache;
+import com.manning.javapersistence.ch06.converter.ZipcodeConverter;
+import com.manning.javapersistence.ch06.model.GermanZipcode;
+import com.manning.javapersistence.ch06.model.SwissZipcode;
+import com.manning.javapersistence.ch06.model.Zipcode;
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class CachingAttributeConverterTest {
+
+    @Test
+    public void shareConvertedZipcodes() {
+        ZipcodeConverter converter = new ZipcodeConverter();
+
+        Zipcode zipcode = converter.convertToEntityAttribute("12345");
+        assertTrue(zipcode instanceof GermanZipcode);
+        assertSame(zipcode, converter.convertToEntityAttribute(new String("12345")));
+        assertTrue(converter.convertToEntityAttribute("1234") instanceof SwissZipcode);
+        assertNull(converter.convertToEntityAttribute(null));
+        assertThrows(IllegalArgumentException.class, () -> converter.convertToEntityAttribute("123"));
+
+        assertAll(
+                () -> assertEquals(1, converter.getCache().getHitCount()),
+                () -> assertEquals(3, converter.getCache().getMissCount()),
+                () -> assertEquals(2, converter.getCache().size())
+        );
+    }
+
+    @Test
+    public void evictLeastRecentlyUsed() {
+        // A single stripe, so the eviction order is deterministic
+        StripedLruCache<String, String> cache = new StripedLruCache<>(2, 1);
+        AtomicInteger computed = new AtomicInteger();
+
+        cache.computeIfAbsent("a", k -> k + computed.incrementAndGet());
+        cache.computeIfAbsent("b", k -> k + computed.incrementAndGet());
+        cache.computeIfAbsent("a", k -> k + computed.incrementAndGet());
+        cache.computeIfAbsent("c", k -> k + computed.incrementAndGet());
+
+        assertEquals(2, cache.size());
+        assertEquals("a1", cache.computeIfAbsent("a", k -> k + computed.incrementAndGet()));
+        assertEquals("b4", cache.computeIfAbsent("b", k -> k + computed.incrementAndGet()));
+        assertThrows(IllegalArgumentException.class, () -> new StripedLruCache<>(0));
+    }
+}
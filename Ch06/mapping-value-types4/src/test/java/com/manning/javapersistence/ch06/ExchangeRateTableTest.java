@@ -0,0 +1,138 @@
+/*
+ * ========================================================================
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * ========================================================================
+ */
+package com.manning.javapersistence.ch06;
+
+import com.manning.javapersistence.ch06.converter.ExchangeRateTable;
+import com.manning.javapersistence.ch06.converter.FileExchangeRateProvider;
+import com.manning.javapersistence.ch06.converter.RateSnapshot;
+import com.manning.javapersistence.ch06.model.Item;
+import com.manning.javapersistence.ch06.model.MonetaryAmount;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import javax.persistence.EntityManager;
+import javax.persistence.EntityManagerFactory;
+import javax.persistence.Persistence;
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Currency;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class ExchangeRateTableTest {
+
+    private static final Currency USD = Currency.getInstance("USD");
+    private static final Currency EUR = Currency.getInstance("EUR");
+    private static final Currency CHF = Currency.getInstance("CHF");
+
+    @Test
+    public void loadRatesFromFile(@TempDir Path directory) throws IOException {
+        Path file = Files.writeString(directory.resolve("rates.properties"),
+                "USD/EUR = 0.92\nEUR/USD = 1.08\n");
+        ExchangeRateTable table = new ExchangeRateTable(new FileExchangeRateProvider(file));
+
+        assertEquals(new BigDecimal("0.92"), table.snapshot().rate(USD, EUR));
+        assertEquals(new BigDecimal("1.08"), table.snapshot().rate(EUR, USD));
+        assertThrows(IllegalArgumentException.class, () -> table.snapshot().rate(USD, CHF));
+
+        MonetaryAmount converted = table.convert(table.snapshot(),
+                new MonetaryAmount(new BigDecimal("10.00"), USD), EUR);
+        assertEquals("9.2000 EUR", converted.toString());
+        assertEquals(1, table.getConversionCount());
+        assertTrue(table.getConversionNanos() > 0);
+
+        // A changed file is only seen after a refresh, which swaps the whole snapshot
+        Files.writeString(file, "USD/EUR = 0.90\ndefault = 1\n");
+        RateSnapshot before = table.snapshot();
+        assertSame(before, table.snapshot());
+        table.refresh();
+        assertNotSame(before, table.snapshot());
+        assertEquals(new BigDecimal("0.90"), table.snapshot().rate(USD, EUR));
+        assertEquals(BigDecimal.ONE, table.snapshot().rate(USD, CHF));
+        // the default rate doesn't apply within one currency
+        assertEquals(BigDecimal.ONE, before.rate(USD, USD));
+        assertEquals(new BigDecimal(2), RateSnapshot.example().rate(USD, USD));
+        assertEquals(new BigDecimal("0.92"), before.rate(USD, EUR));
+        assertEquals(2, table.getRefreshCount());
+    }
+
+    @Test
+    public void pinRatesForTransaction() {
+        AtomicReference<RateSnapshot> rates = new AtomicReference<>(
+                RateSnapshot.builder().rate(USD, EUR, new BigDecimal(2)).build()
+        );
+        ExchangeRateTable table = new ExchangeRateTable(rates::get);
+        ExchangeRateTable.setDefault(table);
+
+        EntityManagerFactory emf =
+                Persistence.createEntityManagerFactory("ch06.mapping_value_types");
+        EntityManager em = emf.createEntityManager();
+
+        try {
+            em.getTransaction().begin();
+            em.persist(item("First Item"));
+            em.flush();
+
+            // New rates are published between the two flushes of the transaction
+            rates.set(RateSnapshot.builder().rate(USD, EUR, new BigDecimal(3)).build());
+            table.refresh();
+
+            em.persist(item("Second Item"));
+            em.getTransaction().commit();
+
+            em.getTransaction().begin();
+            em.persist(item("Third Item"));
+            em.getTransaction().commit();
+
+            // select ITEM_NAME, INITIALPRICE_AMOUNT from ITEM order by ITEM_NAME
+            @SuppressWarnings("unchecked")
+            List<Object[]> rows = em.createNativeQuery(
+                    "select ITEM_NAME, INITIALPRICE_AMOUNT from ITEM order by ITEM_NAME"
+            ).getResultList();
+
+            assertAll(
+                    () -> assertEquals(3, rows.size()),
+                    () -> assertEquals(0, new BigDecimal("2.00").compareTo(new BigDecimal(rows.get(0)[1].toString()))),
+                    () -> assertEquals(0, new BigDecimal("2.00").compareTo(new BigDecimal(rows.get(1)[1].toString()))),
+                    () -> assertEquals(0, new BigDecimal("3.00").compareTo(new BigDecimal(rows.get(2)[1].toString()))),
+                    () -> assertEquals(6, table.getConversionCount())
+            );
+        } finally {
+            ExchangeRateTable.setDefault(new ExchangeRateTable(RateSnapshot::example));
+            em.close();
+            emf.close();
+        }
+    }
+
+    private static Item item(String name) {
+        Item item = new Item();
+        item.setName(name);
+        item.setMetricWeight(2);
+        item.setInitialPrice(new MonetaryAmount(new BigDecimal("1.00"), Currency.getInstance("USD")));
+        item.setBuyNowPrice(new MonetaryAmount(new BigDecimal("1.00"), Currency.getInstance("USD")));
+        item.setDescription("descriptiondescription");
+        return item;
+    }
+}
@@ -0,0 +1,134 @@
+/*
+ * ========================================================================
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * ========================================================================
+ */
+package com.manning.javapersistence.ch06;
+
+import com.manning.javapersistence.ch06.converter.MonetaryAmountUserType;
+import com.manning.javapersistence.ch06.model.MonetaryAmount;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+
+import java.io.Serializable;
+import java.lang.management.ManagementFactory;
+import java.lang.reflect.Proxy;
+import java.math.BigDecimal;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.Currency;
+import java.util.Random;
+import java.util.function.IntFunction;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+// run with: mvn test -Dtest=MonetaryAmountHydrationBenchmark -Dbenchmark=true
+@EnabledIfSystemProperty(named = "benchmark", matches = "true")
+public class MonetaryAmountHydrationBenchmark {
+
+    private static final int BIDS = 1_000_000;
+    private static final String[] NAMES = {"AMOUNT", "CURRENCY"};
+
+    private final MonetaryAmountUserType userType = new MonetaryAmountUserType();
+
+    @Test
+    public void hydrateBids() throws SQLException {
+        /*
+           Bid amounts as the JDBC driver returns them from a <code>DECIMAL(19,2)</code>
+           column: most bids are one of a few hundred round amounts, the rest are arbitrary.
+         */
+        Random random = new Random(42);
+        BigDecimal[] amounts = new BigDecimal[BIDS];
+        String[] currencies = new String[BIDS];
+        for (int i = 0; i < BIDS; i++) {
+            long cents = random.nextInt(5) == 0 ? random.nextInt(10_000_000) : random.nextInt(500) * 100L;
+            amounts[i] = BigDecimal.valueOf(cents, 2);
+            currencies[i] = random.nextBoolean() ? "USD" : "EUR";
+        }
+        ResultSet resultSet = resultSet(amounts, currencies);
+
+        MonetaryAmount[] bids = new MonetaryAmount[BIDS];
+        for (int round = 0; round < 3; round++) {
+            measure("nullSafeGet, Currency.getInstance per row", i -> {
+                try {
+                    resultSet.absolute(i);
+                    return new MonetaryAmount(resultSet.getBigDecimal(NAMES[0]),
+                            Currency.getInstance(resultSet.getString(NAMES[1])));
+                } catch (SQLException e) {
+                    throw new IllegalStateException(e);
+                }
+            }, bids);
+            measure("nullSafeGet, currency table and interning", i -> {
+                try {
+                    resultSet.absolute(i);
+                    return (MonetaryAmount) userType.nullSafeGet(resultSet, NAMES, null, null);
+                } catch (SQLException e) {
+                    throw new IllegalStateException(e);
+                }
+            }, bids);
+
+            String[] cachedStrings = new String[BIDS];
+            Serializable[] cachedCompact = new Serializable[BIDS];
+            for (int i = 0; i < BIDS; i++) {
+                cachedStrings[i] = bids[i].toString();
+                cachedCompact[i] = userType.disassemble(bids[i], null);
+            }
+            measure("assemble from String", i -> MonetaryAmount.fromString(cachedStrings[i]), bids);
+            measure("assemble from compact entry", i ->
+                    (MonetaryAmount) userType.assemble(cachedCompact[i], null, null), bids);
+        }
+        assertEquals(new MonetaryAmount(amounts[0], Currency.getInstance(currencies[0])), bids[0]);
+    }
+
+    private static void measure(String name, IntFunction<MonetaryAmount> hydrate, MonetaryAmount[] bids) {
+        com.sun.management.ThreadMXBean threads =
+                (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        long allocatedBefore = threads.getCurrentThreadAllocatedBytes();
+        long start = System.nanoTime();
+        for (int i = 0; i < bids.length; i++) {
+            bids[i] = hydrate.apply(i);
+        }
+        long millis = (System.nanoTime() - start) / 1_000_000;
+        long allocated = threads.getCurrentThreadAllocatedBytes() - allocatedBefore;
+        System.out.printf("%-45s %5d ms %8.1f bytes/bid%n", name, millis, (double) allocated / bids.length);
+    }
+
+    /*
+       A <code>ResultSet</code> over the given columns, only implementing what
+       <code>nullSafeGet()</code> calls. Both measured variants pay the same proxy overhead.
+     */
+    private static ResultSet resultSet(BigDecimal[] amounts, String[] currencies) {
+        int[] row = new int[1];
+        return (ResultSet) Proxy.newProxyInstance(ResultSet.class.getClassLoader(),
+                new Class<?>[]{ResultSet.class}, (proxy, method, args) -> {
+                    switch (method.getName()) {
+                        case "absolute":
+                            row[0] = (Integer) args[0];
+                            return true;
+                        case "getBigDecimal":
+                            return amounts[row[0]];
+                        case "getString":
+                            return currencies[row[0]];
+                        case "wasNull":
+                            return false;
+                        default:
+                            throw new UnsupportedOperationException(method.getName());
+                    }
+                });
+    }
+}
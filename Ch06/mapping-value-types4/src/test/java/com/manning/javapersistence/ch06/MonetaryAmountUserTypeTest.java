@@ -0,0 +1,92 @@
+/*
+ * ========================================================================
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * ========================================================================
+ */
+package com.manning.javapersistence.ch06;
+
+import com.manning.javapersistence.ch06.converter.MonetaryAmountUserType;
+import com.manning.javapersistence.ch06.model.MonetaryAmount;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.ObjectOutputStream;
+import java.io.Serializable;
+import java.math.BigDecimal;
+import java.util.Currency;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class MonetaryAmountUserTypeTest {
+
+    private final MonetaryAmountUserType userType = new MonetaryAmountUserType();
+
+    @Test
+    public void assembleDisassembledAmounts() {
+        for (MonetaryAmount amount : new MonetaryAmount[]{
+                amount("12.34", "USD"),
+                amount("0.00", "EUR"),
+                amount("-5.5", "CHF"),
+                amount("123456789012.123456", "JPY"),
+                amount("123456789012345678901234567890.12", "USD")
+        }) {
+            assertEquals(amount, userType.assemble(userType.disassemble(amount, null), null, null));
+        }
+    }
+
+    @Test
+    public void shareCommonAmounts() {
+        // Common amounts are assembled to the same instance on every cache hit
+        Serializable cached = userType.disassemble(amount("99.90", "EUR"), null);
+        assertSame(userType.assemble(cached, null, null), userType.assemble(cached, null, null));
+
+        // The same amount in another currency is a different instance
+        Serializable dollars = userType.disassemble(amount("99.90", "USD"), null);
+        assertNotSame(userType.assemble(cached, null, null), userType.assemble(dollars, null, null));
+
+        // Amounts with another scale than the amount columns are assembled, not shared
+        Serializable precise = userType.disassemble(amount("99.905", "EUR"), null);
+        assertNotSame(userType.assemble(precise, null, null), userType.assemble(precise, null, null));
+        assertEquals(amount("99.905", "EUR"), userType.assemble(precise, null, null));
+    }
+
+    @Test
+    public void assembleStringCacheEntries() {
+        // Entries cached by the earlier String representation
+        assertEquals(amount("12.34", "USD"), userType.assemble("12.34 USD", null, null));
+    }
+
+    @Test
+    public void compactCacheRepresentation() throws IOException {
+        MonetaryAmount amount = amount("12.34", "USD");
+        assertTrue(serializedSize(userType.disassemble(amount, null)) < serializedSize(amount));
+    }
+
+    private static MonetaryAmount amount(String value, String currency) {
+        return new MonetaryAmount(new BigDecimal(value), Currency.getInstance(currency));
+    }
+
+    private static int serializedSize(Serializable value) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (ObjectOutputStream out = new ObjectOutputStream(bytes)) {
+            out.writeObject(value);
+        }
+        return bytes.size();
+    }
+}
@@ -0,0 +1,147 @@
+/*
+ * ========================================================================
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * ========================================================================
+ */
+package com.manning.javapersistence.ch06;
+
+import com.manning.javapersistence.ch06.converter.ZipcodeConverter;
+import com.manning.javapersistence.ch06.model.*;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.TestInstance;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+
+import javax.persistence.EntityManager;
+import javax.persistence.EntityManagerFactory;
+import javax.persistence.Persistence;
+import java.lang.management.ManagementFactory;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+// run with: mvn test -Dtest=ZipcodeLoadBenchmark -Dbenchmark=true
+@TestInstance(TestInstance.Lifecycle.PER_CLASS)
+@EnabledIfSystemProperty(named = "benchmark", matches = "true")
+public class ZipcodeLoadBenchmark {
+
+    private static final int USERS = 1_000_000;
+    private static final int ZIPCODES = 8_000;
+    private static final int PAGE = 10_000;
+
+    private EntityManagerFactory emf;
+
+    @BeforeAll
+    void beforeAll() {
+        emf = Persistence.createEntityManagerFactory("ch06.mapping_value_types",
+                Map.of("hibernate.show_sql", "false", "hibernate.jdbc.batch_size", "1000"));
+        EntityManager em = emf.createEntityManager();
+        em.getTransaction().begin();
+        for (int i = 0; i < USERS; i++) {
+            City city = new City();
+            city.setName("City " + i % ZIPCODES);
+            city.setZipcode(new GermanZipcode(String.valueOf(10_000 + i % ZIPCODES)));
+            city.setCountry("Germany");
+            User user = new User();
+            user.setUsername("user" + i);
+            user.setHomeAddress(new Address("Street " + i, city));
+            em.persist(user);
+            if (i % 1000 == 999) {
+                em.flush();
+                em.clear();
+            }
+        }
+        em.getTransaction().commit();
+        em.close();
+    }
+
+    @Test
+    public void loadUsers() {
+        /*
+           The converter alone: a new <code>Zipcode</code> for each row, as
+           before, and the caching <code>ZipcodeConverter</code>.
+         */
+        ZipcodeConverter converter = new ZipcodeConverter();
+        String[] values = new String[USERS];
+        for (int i = 0; i < USERS; i++) {
+            values[i] = String.valueOf(10_000 + i % ZIPCODES);
+        }
+        Zipcode[] zipcodes = new Zipcode[USERS];
+        for (int round = 0; round < 3; round++) {
+            long allocated = allocatedBytes();
+            for (int i = 0; i < USERS; i++) {
+                zipcodes[i] = new GermanZipcode(values[i]);
+            }
+            report("new Zipcode per row", allocatedBytes() - allocated);
+
+            allocated = allocatedBytes();
+            for (int i = 0; i < USERS; i++) {
+                zipcodes[i] = converter.convertToEntityAttribute(values[i]);
+            }
+            report("caching converter", allocatedBytes() - allocated);
+        }
+
+        /*
+           Loading the users, one page per persistence context. The allocation
+           includes everything Hibernate does for a row, the converter is a small part.
+         */
+        for (int round = 0; round < 2; round++) {
+            Set<Zipcode> distinct = Collections.newSetFromMap(new IdentityHashMap<>());
+            long allocated = allocatedBytes();
+            long start = System.nanoTime();
+            int loaded = 0;
+            for (int first = 0; first < USERS; first += PAGE) {
+                EntityManager em = emf.createEntityManager();
+                em.getTransaction().begin();
+                List<User> users = em.createQuery("select u from User u order by u.id", User.class)
+                        .setFirstResult(first)
+                        .setMaxResults(PAGE)
+                        .getResultList();
+                for (User user : users) {
+                    distinct.add(user.getHomeAddress().getCity().getZipcode());
+                }
+                loaded += users.size();
+                em.getTransaction().commit();
+                em.close();
+            }
+            report("load users", allocatedBytes() - allocated);
+            System.out.printf("%d users in %d ms, %d distinct Zipcode instances%n",
+                    loaded, (System.nanoTime() - start) / 1_000_000, distinct.size());
+            assertEquals(USERS, loaded);
+        }
+    }
+
+    private static long allocatedBytes() {
+        return ((com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean())
+                .getCurrentThreadAllocatedBytes();
+    }
+
+    private static void report(String name, long allocated) {
+        System.out.printf("%-25s %8.1f bytes/row%n", name, (double) allocated / USERS);
+    }
+
+    @AfterAll
+    void afterAll() {
+        emf.close();
+    }
+}
@@ -0,0 +1,68 @@
+/*
+ * ========================================================================
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * ========================================================================
+ */
+package com.manning.javapersistence.ch10;
+
+import org.hibernate.FlushMode;
+import org.hibernate.Session;
+
+import javax.persistence.EntityManager;
+import javax.persistence.EntityManagerFactory;
+import java.util.function.Function;
+
+/**
+ * Runs a unit of work in a transaction that is read-only as a whole: every entity
+ * instance is loaded read-only, so Hibernate keeps no snapshot for dirty checking,
+ * the persistence context is never flushed, and the JDBC connection is marked
+ * read-only, so the database can skip its write bookkeeping too.
+ */
+public class ReadOnlyTransaction {
+
+    private ReadOnlyTransaction() {
+    }
+
+    public static <T> T execute(EntityManagerFactory emf, Function<EntityManager, T> work) {
+        EntityManager em = emf.createEntityManager();
+        Session session = em.unwrap(Session.class);
+        try {
+            em.getTransaction().begin();
+            session.setDefaultReadOnly(true);
+            session.setHibernateFlushMode(FlushMode.MANUAL);
+            // before the first statement, so it applies to this transaction
+            session.doWork(connection -> connection.setReadOnly(true));
+
+            T result = work.apply(em);
+
+            // the connection goes back to the pool after the transaction
+            session.doWork(connection -> connection.setReadOnly(false));
+            em.getTransaction().commit();
+            return result;
+        } finally {
+            if (em.getTransaction().isActive()) {
+                try {
+                    session.doWork(connection -> connection.setReadOnly(false));
+                } finally {
+                    em.getTransaction().rollback();
+                }
+            }
+            em.close();
+        }
+    }
+}
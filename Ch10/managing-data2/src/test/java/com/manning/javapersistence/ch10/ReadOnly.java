@@ -20,7 +20,9 @@
  */
 package com.manning.javapersistence.ch10;
 
+import org.hibernate.FlushMode;
 import org.hibernate.Session;
+import org.hibernate.engine.spi.SessionImplementor;
 import org.junit.jupiter.api.Test;
 
 import javax.persistence.EntityManager;
@@ -30,7 +32,11 @@ import java.math.BigDecimal;
 import java.time.LocalDate;
 import java.util.List;
 
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
 import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
 
 public class ReadOnly {
 
@@ -182,4 +188,35 @@ public class ReadOnly {
         em.getTransaction().commit();
         em.close();
     }
+
+    @Test
+    public void readOnlyTransaction() {
+        FetchTestData testData = storeTestData();
+        Long ITEM_ID = testData.items.getFirstId();
+
+        int items = ReadOnlyTransaction.execute(emf, em -> {
+            Session session = em.unwrap(Session.class);
+            assertTrue(session.isDefaultReadOnly());
+            assertEquals(FlushMode.MANUAL, session.getHibernateFlushMode());
+            session.doWork(connection -> assertTrue(connection.isReadOnly()));
+
+            List<Item> result = em.createQuery("select i from Item i", Item.class).getResultList();
+            for (Item item : result) {
+                // no snapshot of the loaded state is kept for dirty checking
+                assertTrue(session.isReadOnly(item));
+                assertNull(((SessionImplementor) session).getPersistenceContext()
+                        .getEntry(item).getLoadedState());
+                item.setName("New Name");
+            }
+            return result.size();
+        });
+        assertEquals(3, items);
+
+        EntityManager em = emf.createEntityManager();
+        em.getTransaction().begin();
+        assertNotEquals("New Name", em.find(Item.class, ITEM_ID).getName());
+        em.unwrap(Session.class).doWork(connection -> assertFalse(connection.isReadOnly()));
+        em.getTransaction().commit();
+        em.close();
+    }
 }
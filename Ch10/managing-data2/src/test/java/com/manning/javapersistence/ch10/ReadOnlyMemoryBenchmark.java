@@ -0,0 +1,114 @@
+/*
+ * ========================================================================
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * ========================================================================
+ */
+package com.manning.javapersistence.ch10;
+
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.TestInstance;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+
+import javax.persistence.EntityManager;
+import javax.persistence.EntityManagerFactory;
+import javax.persistence.Persistence;
+import java.time.LocalDate;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+// run with: mvn test -Dtest=ReadOnlyMemoryBenchmark -Dbenchmark=true
+@TestInstance(TestInstance.Lifecycle.PER_CLASS)
+@EnabledIfSystemProperty(named = "benchmark", matches = "true")
+public class ReadOnlyMemoryBenchmark {
+
+    private static final int ITEMS = 100_000;
+
+    private EntityManagerFactory emf;
+
+    @BeforeAll
+    void beforeAll() {
+        emf = Persistence.createEntityManagerFactory("ch10",
+                Map.of("hibernate.show_sql", "false", "hibernate.jdbc.batch_size", "1000"));
+        EntityManager em = emf.createEntityManager();
+        em.getTransaction().begin();
+        User seller = new User("johndoe");
+        em.persist(seller);
+        for (int i = 0; i < ITEMS; i++) {
+            em.persist(new Item("Item " + i, LocalDate.now().plusDays(i % 30), seller));
+            if (i % 1000 == 999) {
+                em.flush();
+                em.clear();
+                seller = em.getReference(User.class, seller.getId());
+            }
+        }
+        em.getTransaction().commit();
+        em.close();
+    }
+
+    @Test
+    void compareHeapPerLoadedEntities() {
+        // warm up, so the measured runs do not include class loading and query plan caching
+        loadInRegularTransaction();
+        ReadOnlyTransaction.execute(emf, this::load);
+
+        long regular = loadInRegularTransaction();
+        long readOnly = ReadOnlyTransaction.execute(emf, this::load);
+
+        System.out.println("Heap held per " + ITEMS + " loaded items: regular " + regular / 1024 +
+                " KiB, read-only " + readOnly / 1024 + " KiB, saved " + (regular - readOnly) / 1024 + " KiB");
+    }
+
+    private long loadInRegularTransaction() {
+        EntityManager em = emf.createEntityManager();
+        em.getTransaction().begin();
+        long used = load(em);
+        em.getTransaction().commit();
+        em.close();
+        return used;
+    }
+
+    private long load(EntityManager em) {
+        long before = usedHeap();
+        List<Item> items = em.createQuery("select i from Item i", Item.class).getResultList();
+        long after = usedHeap();
+        assertEquals(ITEMS, items.size());
+        return after - before;
+    }
+
+    private static long usedHeap() {
+        Runtime runtime = Runtime.getRuntime();
+        for (int i = 0; i < 3; i++) {
+            System.gc();
+            try {
+                Thread.sleep(100);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        return runtime.totalMemory() - runtime.freeMemory();
+    }
+
+    @AfterAll
+    void afterAll() {
+        emf.close();
+    }
+}
@@ -28,6 +28,7 @@ import java.util.List;
 import java.util.concurrent.ExecutionException;
 import java.util.concurrent.Executors;
 
+import static org.junit.jupiter.api.Assertions.assertAll;
 import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertThrows;
 
@@ -303,4 +304,91 @@ public class Versioning {
         em.close();
     }
 
+    private void renameConcurrently(Long itemId, String name) throws ExecutionException, InterruptedException {
+        Executors.newSingleThreadExecutor().submit(() -> {
+            EntityManager em = emf.createEntityManager();
+            em.getTransaction().begin();
+            em.find(Item.class, itemId).setName(name);
+            em.getTransaction().commit();
+            em.close();
+            return null;
+        }).get();
+    }
+
+    @Test
+    void retryOnOptimisticLock() throws Exception {
+        EntityManager em = emf.createEntityManager();
+        em.getTransaction().begin();
+        Item someItem = new Item("Some Item");
+        em.persist(someItem);
+        em.getTransaction().commit();
+        em.close();
+        final Long ITEM_ID = someItem.getId();
+
+        OptimisticLockRetry retry = new OptimisticLockRetry(emf, 3, 10, 100);
+
+        /*
+           The first attempt loses against a concurrent unit of work, the whole
+           unit of work is then executed again in a new persistence context,
+           where it loads the current version of the <code>Item</code>.
+        */
+        long version = retry.execute(em1 -> {
+            Item item = em1.find(Item.class, ITEM_ID);
+            if (retry.getAttempts() == 1) {
+                renameConcurrently(ITEM_ID, "Other Name");
+            }
+            item.setName("New Name");
+            em1.flush();
+            // update ITEM set NAME = ?, VERSION = ? where ID = ? and VERSION = ?
+            return item.getVersion();
+        });
+
+        EntityManager em2 = emf.createEntityManager();
+        Item item = em2.find(Item.class, ITEM_ID);
+        assertAll(
+                () -> assertEquals("New Name", item.getName()),
+                () -> assertEquals(2, version),
+                () -> assertEquals(2, retry.getAttempts()),
+                () -> assertEquals(1, retry.getRetries()),
+                () -> assertEquals(0, retry.getExhausted())
+        );
+        em2.close();
+    }
+
+    @Test
+    void retryOnOptimisticLockExhausted() {
+        EntityManager em = emf.createEntityManager();
+        em.getTransaction().begin();
+        Item someItem = new Item("Some Item");
+        em.persist(someItem);
+        em.getTransaction().commit();
+        em.close();
+        final Long ITEM_ID = someItem.getId();
+
+        OptimisticLockRetry retry = new OptimisticLockRetry(emf, 3, 1, 10);
+
+        // Every attempt loses against a concurrent unit of work
+        assertThrows(PersistenceException.class, () -> retry.execute(em1 -> {
+            Item item = em1.find(Item.class, ITEM_ID);
+            renameConcurrently(ITEM_ID, "Other Name " + retry.getAttempts());
+            item.setName("New Name");
+            return null;
+        }));
+        assertAll(
+                () -> assertEquals(3, retry.getAttempts()),
+                () -> assertEquals(2, retry.getRetries()),
+                () -> assertEquals(1, retry.getExhausted())
+        );
+    }
+
+    @Test
+    void noRetryOnOtherFailures() {
+        OptimisticLockRetry retry = new OptimisticLockRetry(emf, 3, 1, 10);
+
+        assertThrows(InvalidBidException.class, () -> retry.execute(em1 -> {
+            throw new InvalidBidException("Bid amount too low");
+        }));
+        assertEquals(1, retry.getAttempts());
+    }
+
 }
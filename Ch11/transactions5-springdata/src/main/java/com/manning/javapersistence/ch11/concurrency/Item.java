@@ -26,6 +26,7 @@ import java.math.BigDecimal;
 import java.time.LocalDate;
 
 @Entity
+@Table(indexes = @Index(name = "IDX_ITEM_NAME", columnList = "name", unique = true))
 public class Item {
 
     @Id
@@ -0,0 +1,247 @@
+/*
+ * ========================================================================
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * ========================================================================
+ */
+package com.manning.javapersistence.ch11.repositories;
+
+import com.manning.javapersistence.ch11.concurrency.Log;
+import org.hibernate.Session;
+
+import javax.persistence.EntityManager;
+import javax.persistence.EntityManagerFactory;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * Buffers log messages in a bounded queue and inserts them in JDBC batches through a
+ * single dedicated persistence context, instead of a new transaction per message.
+ * A batch is written when it reaches batchSize or when flushIntervalMillis elapsed
+ * since its first message; producers block while the queue is full.
+ * An alternative to {@link LogRepositoryImpl#log(String)}, for callers that don't
+ * need the log entry to be written in a transaction of its own.
+ */
+public class AsyncLogWriter implements AutoCloseable {
+
+    public enum Durability {
+        // write() returns as soon as the message is queued
+        FIRE_AND_FORGET,
+        // write() returns once the batch containing the message is committed
+        COMMIT_THEN_ACKNOWLEDGE
+    }
+
+    private final EntityManagerFactory emf;
+    private final BlockingQueue<Entry> queue;
+    private final int batchSize;
+    private final long flushIntervalNanos;
+    private final Durability durability;
+    private final Thread writer;
+    private final LongAdder written = new LongAdder();
+    private final LongAdder failed = new LongAdder();
+    private final LongAdder batches = new LongAdder();
+    // producers queue under the read lock, close() stops them under the write lock
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+    private volatile boolean running = true;
+    private EntityManager em;
+
+    public AsyncLogWriter(EntityManagerFactory emf, int capacity, int batchSize,
+                          long flushIntervalMillis, Durability durability) {
+        if (capacity <= 0) {
+            throw new IllegalArgumentException("capacity must be positive: " + capacity);
+        }
+        if (batchSize <= 0) {
+            throw new IllegalArgumentException("batchSize must be positive: " + batchSize);
+        }
+        if (flushIntervalMillis <= 0) {
+            throw new IllegalArgumentException("flushIntervalMillis must be positive: " + flushIntervalMillis);
+        }
+        this.emf = emf;
+        this.queue = new ArrayBlockingQueue<>(capacity);
+        this.batchSize = batchSize;
+        this.flushIntervalNanos = TimeUnit.MILLISECONDS.toNanos(flushIntervalMillis);
+        this.durability = durability;
+        this.writer = new Thread(this::run, "log-writer");
+        this.writer.setDaemon(true);
+        this.writer.start();
+    }
+
+    public void write(String message) {
+        CompletableFuture<Void> written = enqueue(message);
+        if (durability == Durability.COMMIT_THEN_ACKNOWLEDGE) {
+            written.join();
+        }
+    }
+
+    /**
+     * Waits until every message queued before this call has been written.
+     */
+    public void flush() {
+        enqueue(null).join();
+    }
+
+    private CompletableFuture<Void> enqueue(String message) {
+        Entry entry = new Entry(message, LocalDate.now());
+        lock.readLock().lock();
+        try {
+            if (!running) {
+                throw new IllegalStateException("Log writer is closed");
+            }
+            queue.put(entry);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while queueing log message", e);
+        } finally {
+            lock.readLock().unlock();
+        }
+        return entry.written;
+    }
+
+    private void run() {
+        List<Entry> batch = new ArrayList<>(batchSize);
+        while (running || !queue.isEmpty()) {
+            try {
+                Entry first = queue.poll(flushIntervalNanos, TimeUnit.NANOSECONDS);
+                if (first == null) {
+                    continue;
+                }
+                batch.add(first);
+                long deadline = System.nanoTime() + flushIntervalNanos;
+                while (batch.size() < batchSize && first.message != null) {
+                    queue.drainTo(batch, batchSize - batch.size());
+                    long remaining = deadline - System.nanoTime();
+                    if (batch.size() >= batchSize || remaining <= 0) {
+                        break;
+                    }
+                    Entry next = queue.poll(remaining, TimeUnit.NANOSECONDS);
+                    if (next == null) {
+                        break;
+                    }
+                    batch.add(next);
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                running = false;
+            }
+            if (!batch.isEmpty()) {
+                writeBatch(batch);
+                batch.clear();
+            }
+        }
+        closeEntityManager();
+    }
+
+    private void writeBatch(List<Entry> batch) {
+        int messages = 0;
+        try {
+            if (em == null) {
+                em = emf.createEntityManager();
+                em.unwrap(Session.class).setJdbcBatchSize(batchSize);
+            }
+            em.getTransaction().begin();
+            for (Entry entry : batch) {
+                if (entry.message != null) {
+                    Log log = new Log(entry.message);
+                    log.setDate(entry.date);
+                    em.persist(log);
+                    messages++;
+                }
+            }
+            em.getTransaction().commit();
+            em.clear();
+            written.add(messages);
+            batches.increment();
+            batch.forEach(entry -> entry.written.complete(null));
+        } catch (RuntimeException e) {
+            failed.add(messages);
+            closeEntityManager();
+            batch.forEach(entry -> entry.written.completeExceptionally(e));
+        }
+    }
+
+    private void closeEntityManager() {
+        if (em != null) {
+            try {
+                if (em.getTransaction().isActive()) {
+                    em.getTransaction().rollback();
+                }
+                em.close();
+            } catch (RuntimeException e) {
+                // the persistence context is discarded anyway
+            }
+            em = null;
+        }
+    }
+
+    @Override
+    public void close() {
+        lock.writeLock().lock();
+        try {
+            running = false;
+        } finally {
+            lock.writeLock().unlock();
+        }
+        // no message can be queued anymore, the writer drains the queue before stopping
+        try {
+            writer.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return;
+        }
+        // only left over if the writer thread was interrupted
+        IllegalStateException closed = new IllegalStateException("Log writer is closed");
+        for (Entry entry = queue.poll(); entry != null; entry = queue.poll()) {
+            failed.increment();
+            entry.written.completeExceptionally(closed);
+        }
+    }
+
+    public Durability getDurability() {
+        return durability;
+    }
+
+    public long getWritten() {
+        return written.sum();
+    }
+
+    public long getFailed() {
+        return failed.sum();
+    }
+
+    public long getBatches() {
+        return batches.sum();
+    }
+
+    private static final class Entry {
+        private final String message;
+        private final LocalDate date;
+        private final CompletableFuture<Void> written = new CompletableFuture<>();
+
+        private Entry(String message, LocalDate date) {
+            this.message = message;
+            this.date = date;
+        }
+    }
+}
@@ -22,10 +22,17 @@ package com.manning.javapersistence.ch11.repositories;
 
 import com.manning.javapersistence.ch11.concurrency.Item;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
 
 import java.util.Optional;
+import java.util.stream.Stream;
 
 public interface ItemRepository extends JpaRepository<Item, Long>, ItemRepositoryCustom {
 
     Optional<Item> findByName(String name);
+
+    boolean existsByName(String name);
+
+    @Query("select i.name from Item i")
+    Stream<String> streamAllNames();
 }
@@ -23,11 +23,14 @@ package com.manning.javapersistence.ch11.repositories;
 import com.manning.javapersistence.ch11.concurrency.Item;
 import com.manning.javapersistence.ch11.concurrency.Log;
 import com.manning.javapersistence.ch11.exceptions.DuplicateItemNameException;
+import org.hibernate.exception.ConstraintViolationException;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.dao.DataIntegrityViolationException;
 import org.springframework.transaction.annotation.Propagation;
 import org.springframework.transaction.annotation.Transactional;
 
 import java.time.LocalDate;
+import java.util.stream.Stream;
 
 public class ItemRepositoryImpl implements ItemRepositoryCustom {
 
@@ -37,28 +40,95 @@ public class ItemRepositoryImpl implements ItemRepositoryCustom {
     @Autowired
     private LogRepository logRepository;
 
+    @Autowired(required = false)
+    private ItemNameFilter itemNameFilter;
+
     @Override
     @Transactional(propagation = Propagation.MANDATORY)
     public void checkNameDuplicate(String name) {
-        if (itemRepository.findAll().stream().map(item -> item.getName()).filter(n -> n.equals(name)).count() > 0) {
-            throw new DuplicateItemNameException("Item with name " + name + " already exists");
+        if (itemRepository.existsByName(name)) {
+            throw duplicateItemName(name);
+        }
+    }
+
+    /* 
+       The filter only knows the names present when it was seeded and the names saved
+       through this instance. A name saved by another instance, or with a plain save(),
+       passes the filter; the unique index rejects it when the item is flushed, and
+       saveItem() translates that violation.
+     */
+    private boolean mightExist(String name) {
+        if (itemNameFilter == null) {
+            return true;
+        }
+        if (!itemNameFilter.isSeeded()) {
+            try (Stream<String> names = itemRepository.streamAllNames()) {
+                itemNameFilter.seed(names);
+            }
         }
+        return itemNameFilter.mightContain(name);
     }
 
+    private void saveItem(String name, LocalDate creationDate) {
+        try {
+            itemRepository.saveAndFlush(new Item(name, creationDate));
+        } catch (DataIntegrityViolationException e) {
+            if (violatesUniqueName(e)) {
+                // the name exists, the filter answers the next check with a query
+                putName(name);
+                throw duplicateItemName(name);
+            }
+            throw e;
+        }
+        putName(name);
+    }
+
+    private void putName(String name) {
+        if (itemNameFilter != null) {
+            itemNameFilter.put(name);
+        }
+    }
+
+    private static boolean violatesUniqueName(DataIntegrityViolationException e) {
+        for (Throwable cause = e.getCause(); cause != null; cause = cause.getCause()) {
+            if (cause instanceof ConstraintViolationException violation) {
+                return violation.getConstraintName() != null
+                        && violation.getConstraintName().toUpperCase().contains("IDX_ITEM_NAME");
+            }
+        }
+        return false;
+    }
+
+    private static DuplicateItemNameException duplicateItemName(String name) {
+        return new DuplicateItemNameException("Item with name " + name + " already exists");
+    }
+
+    /* 
+       A duplicate name is reported as a DuplicateItemNameException and rolls back the
+       transaction, whether the existence check or the unique index detects it.
+     */
     @Override
     @Transactional
     public void addItem(String name, LocalDate creationDate) {
         logRepository.log("adding item with name " + name);
-        checkNameDuplicate(name);
-        itemRepository.save(new Item(name, creationDate));
+        if (mightExist(name)) {
+            checkNameDuplicate(name);
+        }
+        saveItem(name, creationDate);
     }
 
+    /* 
+       The existence check always runs here, without the filter: a duplicate found by
+       the unique index marks the transaction for rollback, which would also discard
+       the log that this method keeps.
+     */
+
     @Override
     @Transactional(noRollbackFor = DuplicateItemNameException.class)
     public void addItemNoRollback(String name, LocalDate creationDate) {
         logRepository.save(new Log("adding log in method with no rollback for item " + name));
         checkNameDuplicate(name);
-        itemRepository.save(new Item(name, creationDate));
+        saveItem(name, creationDate);
     }
 
     @Override
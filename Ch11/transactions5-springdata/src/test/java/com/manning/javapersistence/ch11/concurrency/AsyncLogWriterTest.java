@@ -0,0 +1,121 @@
+/*
+ * ========================================================================
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * ========================================================================
+ */
+package com.manning.javapersistence.ch11.concurrency;
+
+import com.manning.javapersistence.ch11.configuration.SpringDataConfiguration;
+import com.manning.javapersistence.ch11.repositories.AsyncLogWriter;
+import com.manning.javapersistence.ch11.repositories.ItemRepository;
+import com.manning.javapersistence.ch11.repositories.LogRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.test.context.ContextConfiguration;
+import org.springframework.test.context.junit.jupiter.SpringExtension;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.persistence.EntityManagerFactory;
+import java.time.LocalDate;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@ExtendWith(SpringExtension.class)
+@ContextConfiguration(classes = {SpringDataConfiguration.class})
+public class AsyncLogWriterTest {
+
+    @Autowired
+    private ItemRepository itemRepository;
+
+    @Autowired
+    private LogRepository logRepository;
+
+    @Autowired
+    private EntityManagerFactory emf;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    @BeforeEach
+    public void clean() {
+        itemRepository.deleteAll();
+        logRepository.deleteAll();
+    }
+
+    @Test
+    public void logCommittedBeforeAcknowledge() {
+        try (AsyncLogWriter writer = new AsyncLogWriter(emf, 1_000, 50, 20,
+                AsyncLogWriter.Durability.COMMIT_THEN_ACKNOWLEDGE)) {
+            TransactionTemplate transaction = new TransactionTemplate(transactionManager);
+            // log messages are written by the log writer, so they survive the rollback
+            transaction.executeWithoutResult(status -> {
+                itemRepository.save(new Item("Item1", LocalDate.of(2022, 5, 1)));
+                writer.write("adding item with name Item1");
+                status.setRollbackOnly();
+            });
+            assertAll(
+                    () -> assertEquals(1, logRepository.findAll().size()),
+                    () -> assertEquals("adding item with name Item1", logRepository.findAll().get(0).getMessage()),
+                    () -> assertEquals(0, itemRepository.findAll().size())
+            );
+        }
+    }
+
+    @Test
+    public void fireAndForgetWritesBatches() throws InterruptedException {
+        try (AsyncLogWriter writer = new AsyncLogWriter(emf, 100, 25, 50,
+                AsyncLogWriter.Durability.FIRE_AND_FORGET)) {
+            ExecutorService executor = Executors.newFixedThreadPool(4);
+            for (int i = 0; i < 200; i++) {
+                int message = i;
+                executor.execute(() -> writer.write("message " + message));
+            }
+            executor.shutdown();
+            assertTrue(executor.awaitTermination(10, TimeUnit.SECONDS));
+            writer.flush();
+
+            assertAll(
+                    () -> assertEquals(200, writer.getWritten()),
+                    () -> assertEquals(0, writer.getFailed()),
+                    () -> assertTrue(writer.getBatches() < 200, "batches: " + writer.getBatches()),
+                    () -> assertEquals(200, logRepository.count())
+            );
+        }
+    }
+
+    @Test
+    public void closeDrainsQueue() {
+        AsyncLogWriter writer = new AsyncLogWriter(emf, 100, 10, 1_000,
+                AsyncLogWriter.Durability.FIRE_AND_FORGET);
+        for (int i = 0; i < 35; i++) {
+            writer.write("message " + i);
+        }
+        writer.close();
+
+        assertAll(
+                () -> assertEquals(35, logRepository.count()),
+                () -> assertThrows(IllegalStateException.class, () -> writer.write("too late"))
+        );
+    }
+}
@@ -0,0 +1,151 @@
+/*
+ * ========================================================================
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * ========================================================================
+ */
+package com.manning.javapersistence.ch11.concurrency;
+
+import com.manning.javapersistence.ch11.configuration.SpringDataConfiguration;
+import com.manning.javapersistence.ch11.repositories.ItemNameFilter;
+import com.manning.javapersistence.ch11.repositories.ItemRepository;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.TestInstance;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.ContextConfiguration;
+import org.springframework.test.context.junit.jupiter.SpringExtension;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.sql.DataSource;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+// run with: mvn test -Dtest=DuplicateNameBenchmarkTest -Dbenchmark=true
+@ExtendWith(SpringExtension.class)
+@ContextConfiguration(classes = {SpringDataConfiguration.class, DuplicateNameBenchmarkTest.FilterConfiguration.class})
+@TestInstance(TestInstance.Lifecycle.PER_CLASS)
+@EnabledIfSystemProperty(named = "benchmark", matches = "true")
+public class DuplicateNameBenchmarkTest {
+
+    private static final int ITEMS = 1_000_000;
+    private static final long FIRST_ID = 1_000_000_000L;
+    private static final int CHECKS = 1_000;
+
+    @Configuration
+    static class FilterConfiguration {
+        @Bean
+        public ItemNameFilter itemNameFilter() {
+            return new ItemNameFilter(2 * ITEMS, 0.01);
+        }
+    }
+
+    @Autowired
+    private ItemRepository itemRepository;
+
+    @Autowired
+    private ItemNameFilter itemNameFilter;
+
+    @Autowired
+    private DataSource dataSource;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    private JdbcTemplate jdbcTemplate;
+
+    private TransactionTemplate transactionTemplate;
+
+    @BeforeAll
+    void beforeAll() {
+        jdbcTemplate = new JdbcTemplate(dataSource);
+        transactionTemplate = new TransactionTemplate(transactionManager);
+        List<Object[]> batch = new ArrayList<>();
+        for (int i = 0; i < ITEMS; i++) {
+            batch.add(new Object[]{FIRST_ID + i, 0, String.format("Item%07d", i)});
+            if (batch.size() == 10_000) {
+                insert(batch);
+            }
+        }
+        insert(batch);
+    }
+
+    private void insert(List<Object[]> batch) {
+        jdbcTemplate.batchUpdate("INSERT INTO Item (id, version, name) VALUES (?, ?, ?)", batch);
+        batch.clear();
+    }
+
+    @Test
+    void compareDuplicateChecks() {
+        // seeds the filter with a single projection query
+        long start = System.nanoTime();
+        transactionTemplate.executeWithoutResult(status -> itemRepository.checkNameDuplicate("New"));
+        System.out.println("Filter seeding: " + (System.nanoTime() - start) / 1_000_000 + " ms");
+
+        start = System.nanoTime();
+        long scanned = transactionTemplate.execute(status -> itemRepository.findAll().stream()
+                .filter(item -> item.getName().equals("New")).count());
+        System.out.println("Full table scan, single check: " + (System.nanoTime() - start) / 1_000_000 + " ms");
+        assertEquals(0, scanned);
+
+        start = System.nanoTime();
+        int existing = transactionTemplate.execute(status -> {
+            int found = 0;
+            for (int i = 0; i < CHECKS; i++) {
+                if (itemRepository.existsByName(String.format("Item%07d", i * (ITEMS / CHECKS)))) {
+                    found++;
+                }
+            }
+            return found;
+        });
+        System.out.println("Index lookup, " + CHECKS + " existing names: " +
+                (System.nanoTime() - start) / 1_000_000 + " ms");
+        assertEquals(CHECKS, existing);
+
+        start = System.nanoTime();
+        transactionTemplate.executeWithoutResult(status -> {
+            for (int i = 0; i < CHECKS; i++) {
+                itemRepository.existsByName("New" + i);
+            }
+        });
+        System.out.println("Index lookup, " + CHECKS + " new names: " +
+                (System.nanoTime() - start) / 1_000_000 + " ms");
+
+        start = System.nanoTime();
+        transactionTemplate.executeWithoutResult(status -> {
+            for (int i = 0; i < CHECKS; i++) {
+                itemRepository.checkNameDuplicate("New" + i);
+            }
+        });
+        System.out.println("Filter and index lookup, " + CHECKS + " new names: " +
+                (System.nanoTime() - start) / 1_000_000 + " ms");
+    }
+
+    @AfterAll
+    void afterAll() {
+        jdbcTemplate.update("DELETE FROM Item WHERE id >= ?", FIRST_ID);
+    }
+}
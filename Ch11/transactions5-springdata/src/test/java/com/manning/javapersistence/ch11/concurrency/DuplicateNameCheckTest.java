@@ -0,0 +1,132 @@
+/*
+ * ========================================================================
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * ========================================================================
+ */
+package com.manning.javapersistence.ch11.concurrency;
+
+import com.manning.javapersistence.ch11.configuration.SpringDataConfiguration;
+import com.manning.javapersistence.ch11.exceptions.DuplicateItemNameException;
+import com.manning.javapersistence.ch11.repositories.ItemNameFilter;
+import com.manning.javapersistence.ch11.repositories.ItemRepository;
+import com.manning.javapersistence.ch11.repositories.LogRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.test.context.ContextConfiguration;
+import org.springframework.test.context.junit.jupiter.SpringExtension;
+
+import java.time.LocalDate;
+import java.util.stream.IntStream;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@ExtendWith(SpringExtension.class)
+@ContextConfiguration(classes = {SpringDataConfiguration.class, DuplicateNameCheckTest.FilterConfiguration.class})
+public class DuplicateNameCheckTest {
+
+    @Configuration
+    static class FilterConfiguration {
+        @Bean
+        public ItemNameFilter itemNameFilter() {
+            return new ItemNameFilter(10_000, 0.01);
+        }
+    }
+
+    @Autowired
+    private ItemRepository itemRepository;
+
+    @Autowired
+    private LogRepository logRepository;
+
+    @Autowired
+    private ItemNameFilter itemNameFilter;
+
+    @BeforeEach
+    public void clean() {
+        itemRepository.deleteAll();
+        logRepository.deleteAll();
+    }
+
+    @Test
+    public void duplicateDetectedThroughFilter() {
+        itemRepository.addItem("Item1", LocalDate.of(2022, 5, 1));
+        itemRepository.addItem("Item2", LocalDate.of(2022, 3, 1));
+
+        assertTrue(itemNameFilter.mightContain("Item2"));
+        DuplicateItemNameException ex = assertThrows(DuplicateItemNameException.class,
+                () -> itemRepository.addItem("Item2", LocalDate.of(2016, 3, 1)));
+        assertAll(
+                () -> assertEquals("Item with name Item2 already exists", ex.getMessage()),
+                () -> assertEquals(2, itemRepository.findAll().size()),
+                () -> assertTrue(itemRepository.existsByName("Item1")),
+                () -> assertFalse(itemRepository.existsByName("Item3"))
+        );
+    }
+
+    @Test
+    public void uniqueIndexRejectsDuplicateName() {
+        // items saved without addItem bypass the filter, the unique index still guards the name
+        itemRepository.save(new Item("Item1"));
+        assertThrows(DataIntegrityViolationException.class, () -> itemRepository.save(new Item("Item1")));
+        assertEquals(1, itemRepository.findAll().size());
+    }
+
+    @Test
+    public void duplicateMissedByFilterDetectedByIndex() {
+        itemRepository.addItem("Item1", LocalDate.of(2022, 5, 1));
+        // saved without addItem, as another instance would, the filter doesn't know the name
+        itemRepository.save(new Item("Unfiltered"));
+
+        DuplicateItemNameException ex = assertThrows(DuplicateItemNameException.class,
+                () -> itemRepository.addItem("Unfiltered", LocalDate.of(2022, 3, 1)));
+        assertEquals("Item with name Unfiltered already exists", ex.getMessage());
+        assertTrue(itemNameFilter.mightContain("Unfiltered"));
+
+        // no rollback: the existence check detects the duplicate and the log is kept
+        assertThrows(DuplicateItemNameException.class,
+                () -> itemRepository.addItemNoRollback("Unfiltered", LocalDate.of(2022, 3, 1)));
+        assertAll(
+                () -> assertEquals(2, itemRepository.findAll().size()),
+                () -> assertTrue(logRepository.findAll().stream().anyMatch(
+                        log -> log.getMessage().equals("adding log in method with no rollback for item Unfiltered")))
+        );
+    }
+
+    @Test
+    public void filterHasNoFalseNegatives() {
+        ItemNameFilter filter = new ItemNameFilter(1_000, 0.01);
+        filter.seed(IntStream.range(0, 1_000).mapToObj(i -> "Item" + i));
+        filter.seed(Stream.of("ignored once seeded"));
+
+        long falsePositives = IntStream.range(1_000, 11_000)
+                .filter(i -> filter.mightContain("Item" + i))
+                .count();
+        assertAll(
+                () -> assertTrue(filter.isSeeded()),
+                () -> assertTrue(IntStream.range(0, 1_000).allMatch(i -> filter.mightContain("Item" + i))),
+                () -> assertFalse(filter.mightContain("ignored once seeded")),
+                () -> assertTrue(falsePositives < 300, "false positives: " + falsePositives)
+        );
+    }
+}
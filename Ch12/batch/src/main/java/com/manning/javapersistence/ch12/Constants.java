@@ -22,4 +22,5 @@ package com.manning.javapersistence.ch12;
 
 public class Constants {
     public static final String ID_GENERATOR = "ID_GENERATOR";
+    public static final int MAX_BATCH_FETCH_SIZE = 50;
 }
@@ -46,7 +46,7 @@ public class Item {
     protected User seller;
 
     @OneToMany(mappedBy = "item")
-    @org.hibernate.annotations.BatchSize(size = 5)
+    @org.hibernate.annotations.BatchSize(size = Constants.MAX_BATCH_FETCH_SIZE)
     protected Set<Bid> bids = new HashSet<>();
 
     public Item() {
@@ -20,6 +20,10 @@
  */
 package com.manning.javapersistence.ch12.batch;
 
+import com.manning.javapersistence.ch12.Constants;
+import org.hibernate.SessionFactory;
+import org.hibernate.cfg.AvailableSettings;
+import org.hibernate.stat.Statistics;
 import org.junit.jupiter.api.Test;
 
 import javax.persistence.EntityManager;
@@ -28,7 +32,9 @@ import javax.persistence.Persistence;
 import java.math.BigDecimal;
 import java.time.LocalDate;
 import java.util.List;
+import java.util.Map;
 
+import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertNotNull;
 import static org.junit.jupiter.api.Assertions.assertTrue;
 
@@ -104,7 +110,7 @@ public class Batch {
 
         for (Item item : items) {
             assertNotNull(item.getSeller().getUsername());
-            // select * from USERS where ID in (?, ?, ?, ?, ?, ?, ?, ?, ?, ?)
+            // select * from USERS where ID in (?, ?, ...), one placeholder per pending seller, at most 10
         }
         em.clear();
 
@@ -123,7 +129,7 @@ public class Batch {
 
         for (Item item : items) {
             assertTrue(item.getBids().size() > 0);
-            // select * from BID where ITEM_ID in (?, ?, ?, ?, ?)
+            // select * from BID where ITEM_ID in (?, ?, ?)
         }
 
         // The actual test
@@ -141,4 +147,83 @@ public class Batch {
 
     }
 
+    @Test
+    public void fetchCollectionBatchesAdaptive() {
+        // Same mapping, but with the fixed batch sizes of the LEGACY style
+        EntityManagerFactory legacyEmf = Persistence.createEntityManagerFactory("ch12",
+                Map.of(AvailableSettings.GENERATE_STATISTICS, "true",
+                        AvailableSettings.BATCH_FETCH_STYLE, "LEGACY"));
+        // Created last, its schema export applies to both
+        EntityManagerFactory statisticsEmf = Persistence.createEntityManagerFactory("ch12",
+                Map.of(AvailableSettings.GENERATE_STATISTICS, "true"));
+        try {
+            // items, bids per item
+            int[][] shapes = {{3, 3}, {7, 1}, {13, 2}, {23, 0}, {Constants.MAX_BATCH_FETCH_SIZE + 1, 1}};
+            for (int[] shape : shapes) {
+                int itemCount = shape[0];
+                String prefix = "Shape " + itemCount + "x" + shape[1] + " ";
+                storeItems(statisticsEmf, prefix, itemCount, shape[1]);
+
+                long selects = countBidSelects(statisticsEmf, prefix, itemCount);
+                long legacySelects = countBidSelects(legacyEmf, prefix, itemCount);
+                long expectedSelects = (itemCount + Constants.MAX_BATCH_FETCH_SIZE - 1) / Constants.MAX_BATCH_FETCH_SIZE;
+
+                assertEquals(expectedSelects, selects);
+                // LEGACY only has loaders for 50, 25, 12, 10 and 1 to 9 keys
+                assertTrue(selects <= legacySelects);
+            }
+            // The 13 and 23 items each take one DYNAMIC select, but 12 + 1 and 12 + 10 + 1 LEGACY ones
+            assertEquals(2, countBidSelects(legacyEmf, "Shape 13x2 ", 13));
+            assertEquals(3, countBidSelects(legacyEmf, "Shape 23x0 ", 23));
+        } finally {
+            statisticsEmf.close();
+            legacyEmf.close();
+        }
+    }
+
+    private void storeItems(EntityManagerFactory emf, String prefix, int itemCount, int bidsPerItem) {
+        EntityManager em = emf.createEntityManager();
+        em.getTransaction().begin();
+
+        User seller = new User(prefix + "seller");
+        em.persist(seller);
+        User bidder = new User(prefix + "bidder");
+        em.persist(bidder);
+
+        for (int i = 1; i <= itemCount; i++) {
+            Item item = new Item(prefix + i, LocalDate.now().plusDays(1), seller);
+            em.persist(item);
+            for (int j = 1; j <= bidsPerItem; j++) {
+                Bid bid = new Bid(item, bidder, new BigDecimal(j));
+                item.addBid(bid);
+                em.persist(bid);
+            }
+        }
+
+        em.getTransaction().commit();
+        em.close();
+    }
+
+    private long countBidSelects(EntityManagerFactory emf, String prefix, int itemCount) {
+        Statistics statistics = emf.unwrap(SessionFactory.class).getStatistics();
+        EntityManager em = emf.createEntityManager();
+        em.getTransaction().begin();
+
+        List<Item> items = em.createQuery("select i from Item i where i.name like :prefix", Item.class)
+                .setParameter("prefix", prefix + "%")
+                .getResultList();
+        assertEquals(itemCount, items.size());
+
+        statistics.clear();
+        for (Item item : items) {
+            item.getBids().size();
+            // select * from BID where ITEM_ID in (?, ?, ...), one placeholder per pending collection
+        }
+        long selects = statistics.getPrepareStatementCount();
+
+        em.getTransaction().commit();
+        em.close();
+        return selects;
+    }
+
 }
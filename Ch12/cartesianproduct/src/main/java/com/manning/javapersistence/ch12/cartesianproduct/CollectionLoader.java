@@ -0,0 +1,281 @@
+/*
+ * ========================================================================
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * ========================================================================
+ */
+package com.manning.javapersistence.ch12.cartesianproduct;
+
+import org.hibernate.LockMode;
+import org.hibernate.annotations.QueryHints;
+import org.hibernate.collection.spi.PersistentCollection;
+import org.hibernate.engine.spi.CollectionEntry;
+import org.hibernate.engine.spi.CollectionKey;
+import org.hibernate.engine.spi.EntityEntry;
+import org.hibernate.engine.spi.EntityKey;
+import org.hibernate.engine.spi.PersistenceContext;
+import org.hibernate.engine.spi.SessionImplementor;
+import org.hibernate.engine.spi.Status;
+import org.hibernate.persister.collection.CollectionPersister;
+import org.hibernate.persister.entity.EntityPersister;
+import org.hibernate.proxy.HibernateProxy;
+import org.hibernate.type.CollectionType;
+import org.hibernate.type.Type;
+import org.hibernate.type.TypeHelper;
+
+import javax.persistence.EntityGraph;
+import javax.persistence.EntityManager;
+import javax.persistence.EntityManagerFactory;
+import javax.persistence.PersistenceException;
+import javax.persistence.metamodel.Attribute;
+import javax.persistence.metamodel.EntityType;
+import javax.persistence.metamodel.PluralAttribute;
+import java.io.Serializable;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+
+/**
+ * Loads root entities together with several collections without joining the collections
+ * in one statement. Each collection is join fetched by its own query restricted to the
+ * root identifiers, so the number of rows is the sum, not the product, of the collection sizes.
+ * The queries use a fetch graph: associations that are not requested are not fetched,
+ * even if they are mapped as eager, and stay uninitialized proxies.
+ */
+public class CollectionLoader<T> {
+
+    private static final String FETCH_GRAPH = "javax.persistence.fetchgraph";
+
+    private final Class<T> rootClass;
+
+    public CollectionLoader(Class<T> rootClass) {
+        this.rootClass = rootClass;
+    }
+
+    /**
+     * Runs one query per collection in the given persistence context; the returned roots
+     * are managed and their collections are initialized.
+     */
+    public List<T> load(EntityManager em, Collection<?> ids, String... collections) {
+        if (collections.length == 0) {
+            return query(em, ids, null);
+        }
+        List<T> roots = query(em, ids, collections[0]);
+        for (int i = 1; i < collections.length; i++) {
+            query(em, ids, collections[i]);
+        }
+        return roots;
+    }
+
+    /**
+     * Runs one query per collection concurrently, each in its own persistence context and
+     * on its own connection, while the roots are loaded in the given persistence context.
+     * The fetched collections are then attached to the managed roots, as if they had been
+     * loaded in the given persistence context: the returned roots are managed and their
+     * collections are initialized. Entity elements become managed as well, their to-one
+     * associations are resolved in the given persistence context. Collections that are
+     * already initialized in the given persistence context are kept.
+     */
+    public List<T> loadConcurrently(EntityManager em, ExecutorService executor,
+                                    Collection<?> ids, String... collections) {
+        EntityManagerFactory emf = em.getEntityManagerFactory();
+        Map<String, Future<Map<Object, Collection<?>>>> futures = new LinkedHashMap<>();
+        for (String collection : collections) {
+            collectionAttribute(emf.getMetamodel().entity(rootClass), collection);
+            futures.put(collection, executor.submit(() -> inNewPersistenceContext(emf, ids, collection)));
+        }
+        List<T> roots = query(em, ids, null);
+        SessionImplementor session = em.unwrap(SessionImplementor.class);
+        for (Map.Entry<String, Future<Map<Object, Collection<?>>>> future : futures.entrySet()) {
+            Map<Object, Collection<?>> elements = get(future.getValue());
+            for (T root : roots) {
+                attach(session, root, future.getKey(), elements.get(emf.getPersistenceUnitUtil().getIdentifier(root)));
+            }
+        }
+        return roots;
+    }
+
+    /*
+       Returns the elements of the collection by root identifier. The collections are
+       initialized, so they can still be read after the persistence context is closed.
+     */
+    private Map<Object, Collection<?>> inNewPersistenceContext(EntityManagerFactory emf, Collection<?> ids,
+                                                               String collection) {
+        EntityManager em = emf.createEntityManager();
+        try {
+            em.getTransaction().begin();
+            Map<Object, Collection<?>> elements = new HashMap<>();
+            for (T root : query(em, ids, collection)) {
+                elements.put(emf.getPersistenceUnitUtil().getIdentifier(root),
+                        (Collection<?>) em.unwrap(SessionImplementor.class)
+                                .getEntityPersister(null, root).getPropertyValue(root, collection));
+            }
+            em.getTransaction().commit();
+            return elements;
+        } finally {
+            if (em.getTransaction().isActive()) {
+                em.getTransaction().rollback();
+            }
+            em.close();
+        }
+    }
+
+    private List<T> query(EntityManager em, Collection<?> ids, String collection) {
+        EntityType<T> entityType = em.getMetamodel().entity(rootClass);
+        String idName = entityType.getId(entityType.getIdType().getJavaType()).getName();
+
+        // The fetch graph keeps the associations that are not requested from being loaded
+        EntityGraph<T> graph = em.createEntityGraph(rootClass);
+        String fetch = "";
+        if (collection != null) {
+            collectionAttribute(entityType, collection);
+            graph.addAttributeNodes(collection);
+            fetch = " left join fetch r." + collection;
+        }
+        return em.createQuery("select distinct r from " + entityType.getName() + " r" + fetch +
+                        " where r." + idName + " in :ids", rootClass)
+                .setParameter("ids", ids)
+                .setHint(FETCH_GRAPH, graph)
+                .setHint(QueryHints.PASS_DISTINCT_THROUGH, false)
+                .getResultList();
+    }
+
+    private Attribute<? super T, ?> collectionAttribute(EntityType<T> entityType, String collection) {
+        Attribute<? super T, ?> attribute = entityType.getAttribute(collection);
+        if (!attribute.isCollection()) {
+            throw new IllegalArgumentException(collection + " is not a collection of " + entityType.getName());
+        }
+        if (((PluralAttribute<?, ?, ?>) attribute).getCollectionType() == PluralAttribute.CollectionType.MAP) {
+            throw new IllegalArgumentException(collection + " of " + entityType.getName() + " is a map");
+        }
+        return attribute;
+    }
+
+    /*
+       Replaces the uninitialized collection of the managed root with an initialized one,
+       registered in the persistence context with a snapshot of its elements, as Hibernate
+       does for a collection it loaded itself; flushing doesn't rewrite the collection.
+     */
+    @SuppressWarnings("unchecked")
+    private void attach(SessionImplementor session, T root, String collection, Collection<?> elements) {
+        PersistenceContext persistenceContext = session.getPersistenceContextInternal();
+        EntityPersister persister = session.getEntityPersister(null, root);
+        CollectionPersister collectionPersister = session.getFactory().getMetamodel()
+                .collectionPersister(persister.getEntityName() + "." + collection);
+        Serializable id = persister.getIdentifier(root, session);
+
+        PersistentCollection current = persistenceContext.getCollection(new CollectionKey(collectionPersister, id));
+        if (current != null) {
+            if (current.wasInitialized()) {
+                return;
+            }
+            CollectionEntry currentEntry = persistenceContext.getCollectionEntry(current);
+            persistenceContext.getBatchFetchQueue().removeBatchLoadableCollection(currentEntry);
+        }
+
+        CollectionType collectionType = collectionPersister.getCollectionType();
+        Collection<Object> values = (Collection<Object>) collectionType.instantiate(
+                elements == null ? 0 : elements.size());
+        if (elements != null) {
+            for (Object element : elements) {
+                values.add(collectionPersister.getElementType().isEntityType()
+                        ? manage(session, element)
+                        : element);
+            }
+        }
+        PersistentCollection initialized = collectionType.wrap(session, values);
+        initialized.setOwner(root);
+        persistenceContext.addInitializedCollection(collectionPersister, initialized, id);
+
+        int index = persister.getEntityMetamodel().getPropertyIndex(collection);
+        persister.setPropertyValue(root, index, initialized);
+        persistenceContext.getEntry(root).getLoadedState()[index] = initialized;
+    }
+
+    /*
+       Adds an entity loaded by another persistence context to this one, unless it already
+       contains an instance with the same identifier. To-one associations are replaced by
+       the instances or proxies of this persistence context, collections by uninitialized
+       collections of this persistence context.
+     */
+    private Object manage(SessionImplementor session, Object entity) {
+        PersistenceContext persistenceContext = session.getPersistenceContextInternal();
+        EntityPersister persister = session.getEntityPersister(null, entity);
+        EntityKey key = session.generateEntityKey(persister.getIdentifier(entity, session), persister);
+        Object managed = persistenceContext.getEntity(key);
+        if (managed != null) {
+            return managed;
+        }
+
+        Type[] types = persister.getPropertyTypes();
+        Object[] values = persister.getPropertyValues(entity);
+        for (int i = 0; i < types.length; i++) {
+            if (types[i].isEntityType() && values[i] != null) {
+                values[i] = reference(session, (org.hibernate.type.EntityType) types[i], values[i]);
+            } else if (types[i].isCollectionType()) {
+                values[i] = null;
+            }
+        }
+        persister.setPropertyValues(entity, values);
+        Object[] loadedState = new Object[values.length];
+        TypeHelper.deepCopy(values, types, persister.getPropertyUpdateability(), loadedState, session);
+        EntityEntry entry = persistenceContext.addEntity(entity, Status.MANAGED, loadedState, key,
+                persister.getVersion(entity), LockMode.NONE, true, persister, false);
+
+        // resolving a collection needs the entry of its owner
+        for (int i = 0; i < types.length; i++) {
+            if (types[i].isCollectionType()) {
+                values[i] = ((CollectionType) types[i]).resolve(null, session, entity);
+                persister.setPropertyValue(entity, i, values[i]);
+                entry.getLoadedState()[i] = values[i];
+            }
+        }
+
+        Object proxy = persistenceContext.getProxy(key);
+        if (proxy instanceof HibernateProxy) {
+            ((HibernateProxy) proxy).getHibernateLazyInitializer().setImplementation(entity);
+        }
+        return entity;
+    }
+
+    private Object reference(SessionImplementor session, org.hibernate.type.EntityType type, Object value) {
+        Serializable id = value instanceof HibernateProxy
+                ? ((HibernateProxy) value).getHibernateLazyInitializer().getIdentifier()
+                : session.getFactory().getMetamodel().entityPersister(type.getAssociatedEntityName())
+                        .getIdentifier(value, session);
+        return session.internalLoad(type.getAssociatedEntityName(), id, false, false);
+    }
+
+    private static <R> R get(Future<R> future) {
+        try {
+            return future.get();
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
+            }
+            throw new PersistenceException(e.getCause());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new PersistenceException(e);
+        }
+    }
+}
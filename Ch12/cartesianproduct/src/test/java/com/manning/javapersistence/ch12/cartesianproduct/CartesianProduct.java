@@ -20,15 +20,25 @@
  */
 package com.manning.javapersistence.ch12.cartesianproduct;
 
+import org.hibernate.Hibernate;
+import org.hibernate.SessionFactory;
+import org.hibernate.cfg.AvailableSettings;
+import org.hibernate.stat.Statistics;
 import org.junit.jupiter.api.Test;
 
 import javax.persistence.EntityManager;
 import javax.persistence.EntityManagerFactory;
 import javax.persistence.Persistence;
+import javax.persistence.PersistenceUnitUtil;
 import java.math.BigDecimal;
 import java.time.LocalDate;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 
-import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.*;
 
 public class CartesianProduct {
 
@@ -36,6 +46,10 @@ public class CartesianProduct {
             Persistence.createEntityManagerFactory("ch12");
 
     private FetchTestData storeTestData() {
+        return storeTestData(emf);
+    }
+
+    private FetchTestData storeTestData(EntityManagerFactory emf) {
         EntityManager em = emf.createEntityManager();
         em.getTransaction().begin();
 
@@ -114,4 +128,117 @@ public class CartesianProduct {
         em.close();
     }
 
+    @Test
+    public void fetchCollectionsWithLoader() {
+        EntityManagerFactory statisticsEmf = Persistence.createEntityManagerFactory("ch12",
+                Map.of(AvailableSettings.GENERATE_STATISTICS, "true"));
+        FetchTestData testData = storeTestData(statisticsEmf);
+        Statistics statistics = statisticsEmf.unwrap(SessionFactory.class).getStatistics();
+
+        EntityManager em = statisticsEmf.createEntityManager();
+        em.getTransaction().begin();
+
+        statistics.clear();
+        List<Item> items = new CollectionLoader<>(Item.class)
+                .load(em, Arrays.asList(testData.items.identifiers), "bids", "images");
+        // select i.*, b.*
+        //  from ITEM i
+        //   left outer join BID b on b.ITEM_ID = i.ID
+        //  where i.ID in (?, ?, ?)
+        // select i.*, img.*
+        //  from ITEM i
+        //   left outer join IMAGE img on img.ITEM_ID = i.ID
+        //  where i.ID in (?, ?, ?)
+
+        // The fetch graph overrides the eager mapping of Item#seller, no seller is loaded
+        assertEquals(2, statistics.getPrepareStatementCount());
+        assertEquals(3, items.size());
+        PersistenceUnitUtil util = statisticsEmf.getPersistenceUnitUtil();
+        for (Item item : items) {
+            assertTrue(util.isLoaded(item, "bids"));
+            assertTrue(util.isLoaded(item, "images"));
+            assertFalse(Hibernate.isInitialized(item.getSeller()));
+        }
+        assertEquals(2, statistics.getPrepareStatementCount());
+
+        Item item = em.find(Item.class, testData.items.getFirstId());
+        em.detach(item);
+        assertAll(
+                () -> assertEquals(3, item.getImages().size()),
+                () -> assertEquals(3, item.getBids().size())
+        );
+
+        em.getTransaction().commit();
+        em.close();
+        statisticsEmf.close();
+    }
+
+    @Test
+    public void fetchCollectionsConcurrently() {
+        EntityManagerFactory statisticsEmf = Persistence.createEntityManagerFactory("ch12",
+                Map.of(AvailableSettings.GENERATE_STATISTICS, "true"));
+        FetchTestData testData = storeTestData(statisticsEmf);
+        Statistics statistics = statisticsEmf.unwrap(SessionFactory.class).getStatistics();
+        ExecutorService executor = Executors.newFixedThreadPool(2);
+
+        EntityManager em = statisticsEmf.createEntityManager();
+        em.getTransaction().begin();
+
+        statistics.clear();
+        List<Item> items = new CollectionLoader<>(Item.class)
+                .loadConcurrently(em, executor, Arrays.asList(testData.items.identifiers), "bids", "images");
+        executor.shutdown();
+        // select i.* from ITEM i where i.ID in (?, ?, ?)
+        // and concurrently, each in its own persistence context:
+        // select i.*, b.* from ITEM i left outer join BID b on b.ITEM_ID = i.ID where i.ID in (?, ?, ?)
+        // select i.*, img.* from ITEM i left outer join IMAGE img on img.ITEM_ID = i.ID where i.ID in (?, ?, ?)
+        assertEquals(3, statistics.getPrepareStatementCount());
+
+        assertEquals(3, items.size());
+        PersistenceUnitUtil util = statisticsEmf.getPersistenceUnitUtil();
+        Item first = null;
+        for (Item item : items) {
+            assertTrue(em.contains(item));
+            assertTrue(util.isLoaded(item, "bids"));
+            assertTrue(util.isLoaded(item, "images"));
+            for (Bid bid : item.getBids()) {
+                assertTrue(em.contains(bid));
+                assertSame(item, bid.getItem());
+            }
+            if (item.getId().equals(testData.items.getFirstId())) {
+                first = item;
+            }
+        }
+        assertNotNull(first);
+        assertEquals(3, first.getBids().size());
+        assertEquals(3, first.getImages().size());
+        assertSame(first, em.find(Item.class, first.getId()));
+        // everything was read from the persistence context
+        assertEquals(3, statistics.getPrepareStatementCount());
+
+        // the attached collections and their elements are dirty checked like loaded ones
+        first.getBids().iterator().next().setAmount(new BigDecimal("99.99"));
+        em.getTransaction().commit();
+        em.close();
+        assertEquals(1, statistics.getEntityUpdateCount());
+        assertEquals(0, statistics.getCollectionRecreateCount());
+        assertEquals(0, statistics.getCollectionRemoveCount());
+        assertEquals(0, statistics.getCollectionUpdateCount());
+
+        em = statisticsEmf.createEntityManager();
+        Item item = em.find(Item.class, first.getId());
+        assertEquals(3, item.getImages().size());
+        assertTrue(item.getBids().stream().anyMatch(bid -> new BigDecimal("99.99").compareTo(bid.getAmount()) == 0));
+        em.close();
+        statisticsEmf.close();
+    }
+
+    @Test
+    public void fetchUnknownCollectionWithLoader() {
+        EntityManager em = emf.createEntityManager();
+        assertThrows(IllegalArgumentException.class,
+                () -> new CollectionLoader<>(Item.class).load(em, List.of(1L), "seller"));
+        em.close();
+    }
+
 }
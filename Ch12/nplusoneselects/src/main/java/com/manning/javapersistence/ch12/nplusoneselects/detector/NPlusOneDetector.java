@@ -0,0 +1,159 @@
+/*
+ * ========================================================================
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * ========================================================================
+ */
+package com.manning.javapersistence.ch12.nplusoneselects.detector;
+
+import org.hibernate.engine.spi.SessionFactoryImplementor;
+import org.hibernate.engine.spi.SessionImplementor;
+import org.hibernate.engine.spi.SharedSessionContractImplementor;
+import org.hibernate.resource.jdbc.spi.StatementInspector;
+
+import javax.persistence.EntityManagerFactory;
+import java.util.ArrayDeque;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.WeakHashMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.regex.Pattern;
+
+/**
+ * Counts the statements executed by entity and collection loads of each transaction.
+ * {@link NPlusOneIntegrator} wraps the load event listeners of the session factory
+ * this detector is registered with, so only the SQL of persister loads is counted,
+ * queries are not.
+ */
+public class NPlusOneDetector implements StatementInspector {
+
+    public enum Mode {
+        FAIL, COUNT
+    }
+
+    public static final int DEFAULT_THRESHOLD = 1;
+
+    private static final Pattern STRING_LITERAL = Pattern.compile("'(?:[^']|'')*'");
+    private static final Pattern NUMBER_LITERAL = Pattern.compile("\\b\\d+(?:\\.\\d+)?\\b");
+    private static final Pattern IN_LIST = Pattern.compile("in \\(\\?(?:, ?\\?)*\\)");
+    private static final Pattern WHITESPACE = Pattern.compile("\\s+");
+
+    private final Mode mode;
+
+    private final int threshold;
+
+    // Sessions running a load on the current thread, innermost first
+    private final ThreadLocal<Deque<SharedSessionContractImplementor>> loading =
+            ThreadLocal.withInitial(ArrayDeque::new);
+
+    // Executions of each load statement, per session, until its transaction completes
+    private final Map<SharedSessionContractImplementor, Map<String, Integer>> unitsOfWork =
+            Collections.synchronizedMap(new WeakHashMap<>());
+
+    private final Map<String, LongAdder> violations = new ConcurrentHashMap<>();
+
+    public NPlusOneDetector() {
+        this(Mode.COUNT, DEFAULT_THRESHOLD);
+    }
+
+    public NPlusOneDetector(Mode mode, int threshold) {
+        if (threshold < 1) {
+            throw new IllegalArgumentException("threshold must be positive: " + threshold);
+        }
+        this.mode = mode;
+        this.threshold = threshold;
+    }
+
+    /**
+     * Returns the detector the factory was configured with, also when Hibernate
+     * created it from the class name in <code>persistence.xml</code>.
+     */
+    public static NPlusOneDetector registeredWith(EntityManagerFactory emf) {
+        StatementInspector inspector = emf.unwrap(SessionFactoryImplementor.class)
+                .getSessionFactoryOptions().getStatementInspector();
+        if (!(inspector instanceof NPlusOneDetector)) {
+            throw new IllegalStateException("No NPlusOneDetector registered with " + emf);
+        }
+        return (NPlusOneDetector) inspector;
+    }
+
+    @Override
+    public String inspect(String sql) {
+        SharedSessionContractImplementor session = loading.get().peek();
+        if (session != null) {
+            String shape = normalize(sql);
+            int executions = unitsOfWork.computeIfAbsent(session, this::beginUnitOfWork)
+                    .merge(shape, 1, Integer::sum);
+            if (executions > threshold) {
+                if (mode == Mode.FAIL) {
+                    throw new NPlusOneSelectException(shape, executions);
+                }
+                violations.computeIfAbsent(shape, s -> new LongAdder()).increment();
+            }
+        }
+        return sql;
+    }
+
+    /*
+       The counts of a session start over when its current transaction completes. Counts
+       taken outside of a transaction last until the next transaction of the session
+       completes, those of a stateless session as long as the session.
+     */
+    private Map<String, Integer> beginUnitOfWork(SharedSessionContractImplementor session) {
+        if (session instanceof SessionImplementor) {
+            ((SessionImplementor) session).getActionQueue()
+                    .registerProcess((success, completed) -> unitsOfWork.remove(completed));
+        }
+        return new HashMap<>();
+    }
+
+    void load(SharedSessionContractImplementor session, Runnable load) {
+        Deque<SharedSessionContractImplementor> sessions = loading.get();
+        sessions.push(session);
+        try {
+            load.run();
+        } finally {
+            sessions.pop();
+        }
+    }
+
+    public Map<String, Long> getViolations() {
+        Map<String, Long> snapshot = new TreeMap<>();
+        violations.forEach((shape, count) -> snapshot.put(shape, count.sum()));
+        return Collections.unmodifiableMap(snapshot);
+    }
+
+    public long getViolationCount() {
+        return violations.values().stream().mapToLong(LongAdder::sum).sum();
+    }
+
+    public void resetViolations() {
+        violations.clear();
+    }
+
+    static String normalize(String sql) {
+        String shape = WHITESPACE.matcher(sql.trim().toLowerCase()).replaceAll(" ");
+        shape = STRING_LITERAL.matcher(shape).replaceAll("?");
+        shape = NUMBER_LITERAL.matcher(shape).replaceAll("?");
+        return IN_LIST.matcher(shape).replaceAll("in (...)");
+    }
+
+}
@@ -0,0 +1,86 @@
+/*
+ * ========================================================================
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * ========================================================================
+ */
+package com.manning.javapersistence.ch12.nplusoneselects.detector;
+
+import org.hibernate.boot.Metadata;
+import org.hibernate.engine.spi.SessionFactoryImplementor;
+import org.hibernate.event.service.spi.EventListenerGroup;
+import org.hibernate.event.service.spi.EventListenerRegistry;
+import org.hibernate.event.spi.EventType;
+import org.hibernate.event.spi.InitializeCollectionEventListener;
+import org.hibernate.event.spi.LoadEventListener;
+import org.hibernate.integrator.spi.Integrator;
+import org.hibernate.resource.jdbc.spi.StatementInspector;
+import org.hibernate.service.spi.SessionFactoryServiceRegistry;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Wraps the entity load and collection initialization listeners of every session
+ * factory that has an {@link NPlusOneDetector} as its statement inspector, so the
+ * detector knows which statements belong to a load. Hibernate finds the integrator in
+ * <code>META-INF/services/org.hibernate.integrator.spi.Integrator</code>.
+ */
+public class NPlusOneIntegrator implements Integrator {
+
+    @Override
+    public void integrate(Metadata metadata,
+                          SessionFactoryImplementor sessionFactory,
+                          SessionFactoryServiceRegistry serviceRegistry) {
+        StatementInspector inspector = sessionFactory.getSessionFactoryOptions().getStatementInspector();
+        if (!(inspector instanceof NPlusOneDetector)) {
+            return;
+        }
+        NPlusOneDetector detector = (NPlusOneDetector) inspector;
+        EventListenerRegistry registry = serviceRegistry.getService(EventListenerRegistry.class);
+
+        List<LoadEventListener> loadListeners = replaceListeners(registry.getEventListenerGroup(EventType.LOAD));
+        registry.appendListeners(EventType.LOAD, (LoadEventListener) (event, loadType) ->
+                detector.load(event.getSession(), () -> {
+                    for (LoadEventListener listener : loadListeners) {
+                        listener.onLoad(event, loadType);
+                    }
+                }));
+
+        List<InitializeCollectionEventListener> collectionListeners =
+                replaceListeners(registry.getEventListenerGroup(EventType.INIT_COLLECTION));
+        registry.appendListeners(EventType.INIT_COLLECTION, (InitializeCollectionEventListener) event ->
+                detector.load(event.getSession(), () -> {
+                    for (InitializeCollectionEventListener listener : collectionListeners) {
+                        listener.onInitializeCollection(event);
+                    }
+                }));
+    }
+
+    // Firing an "event" that collects each listener enumerates the group without listeners()
+    private static <T> List<T> replaceListeners(EventListenerGroup<T> group) {
+        List<T> listeners = new ArrayList<>();
+        group.fireEventOnEachListener(listeners, (listener, collected) -> collected.add(listener));
+        group.clearListeners();
+        return listeners;
+    }
+
+    @Override
+    public void disintegrate(SessionFactoryImplementor sessionFactory,
+                             SessionFactoryServiceRegistry serviceRegistry) {
+    }
+}
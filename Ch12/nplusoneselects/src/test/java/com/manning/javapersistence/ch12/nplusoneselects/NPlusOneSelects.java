@@ -20,6 +20,9 @@
  */
 package com.manning.javapersistence.ch12.nplusoneselects;
 
+import com.manning.javapersistence.ch12.nplusoneselects.detector.NPlusOneDetector;
+import com.manning.javapersistence.ch12.nplusoneselects.detector.NPlusOneSelectException;
+import org.hibernate.cfg.AvailableSettings;
 import org.junit.jupiter.api.Test;
 
 import javax.persistence.EntityManager;
@@ -28,6 +31,7 @@ import javax.persistence.Persistence;
 import java.math.BigDecimal;
 import java.time.LocalDate;
 import java.util.List;
+import java.util.Map;
 
 import static org.junit.jupiter.api.Assertions.*;
 
@@ -37,6 +41,10 @@ public class NPlusOneSelects {
             Persistence.createEntityManagerFactory("ch12");
 
     private FetchTestData storeTestData() {
+        return storeTestData(emf);
+    }
+
+    private FetchTestData storeTestData(EntityManagerFactory emf) {
         EntityManager em = emf.createEntityManager();
         em.getTransaction().begin();
 
@@ -91,6 +99,13 @@ public class NPlusOneSelects {
         return testData;
     }
 
+    private EntityManagerFactory createDetectingEmf(NPlusOneDetector detector) {
+        EntityManagerFactory detectingEmf = Persistence.createEntityManagerFactory("ch12",
+                Map.of(AvailableSettings.STATEMENT_INSPECTOR, detector));
+        storeTestData(detectingEmf);
+        return detectingEmf;
+    }
+
     @Test
     public void fetchUsers() throws Exception {
         storeTestData();
@@ -131,4 +146,145 @@ public class NPlusOneSelects {
         em.close();
     }
 
+    @Test
+    public void detectUsersFailFast() {
+        NPlusOneDetector detector = new NPlusOneDetector(NPlusOneDetector.Mode.FAIL, 1);
+        EntityManagerFactory detectingEmf = createDetectingEmf(detector);
+
+        EntityManager em = detectingEmf.createEntityManager();
+        em.getTransaction().begin();
+        try {
+            List<Item> items = em.createQuery("select i from Item i", Item.class).getResultList();
+
+            NPlusOneSelectException exception = assertThrows(NPlusOneSelectException.class, () -> {
+                for (Item item : items) {
+                    item.getSeller().getUsername();
+                }
+            });
+            assertAll(
+                    () -> assertEquals(2, exception.getExecutions()),
+                    () -> assertTrue(exception.getShape().contains("from users"))
+            );
+        } finally {
+            em.getTransaction().rollback();
+            em.close();
+            detectingEmf.close();
+        }
+    }
+
+    @Test
+    public void noDetectionWithJoinFetch() {
+        NPlusOneDetector detector = new NPlusOneDetector(NPlusOneDetector.Mode.FAIL, 1);
+        EntityManagerFactory detectingEmf = createDetectingEmf(detector);
+
+        EntityManager em = detectingEmf.createEntityManager();
+        em.getTransaction().begin();
+
+        List<Item> items = em.createQuery("select i from Item i join fetch i.seller left join fetch i.bids",
+                Item.class).getResultList();
+        // select i.*, u.*, b.*
+        //  from ITEM i
+        //   inner join USERS u on u.ID = i.SELLER_ID
+        //   left outer join BID b on b.ITEM_ID = i.ID
+
+        for (Item item : items) {
+            assertNotNull(item.getSeller().getUsername());
+            assertTrue(item.getBids().size() > 0);
+        }
+
+        em.getTransaction().commit();
+        em.close();
+        detectingEmf.close();
+    }
+
+    @Test
+    public void noDetectionForRepeatedQuery() {
+        NPlusOneDetector detector = new NPlusOneDetector(NPlusOneDetector.Mode.FAIL, 1);
+        EntityManagerFactory detectingEmf = createDetectingEmf(detector);
+
+        EntityManager em = detectingEmf.createEntityManager();
+        em.getTransaction().begin();
+
+        // Same single-row shape as a load, but a query
+        for (String name : List.of("Item One", "Item Two", "Item Three")) {
+            assertNotNull(em.createQuery("select i from Item i where i.name = :name", Item.class)
+                    .setParameter("name", name).getSingleResult());
+        }
+
+        em.getTransaction().commit();
+        em.close();
+        detectingEmf.close();
+    }
+
+    @Test
+    public void countsStartOverWithEachTransaction() {
+        NPlusOneDetector detector = new NPlusOneDetector(NPlusOneDetector.Mode.FAIL, 1);
+        EntityManagerFactory detectingEmf = createDetectingEmf(detector);
+
+        EntityManager em = detectingEmf.createEntityManager();
+        Long itemId = em.createQuery("select i.id from Item i where i.name = 'Item One'", Long.class)
+                .getSingleResult();
+        for (int i = 0; i < 2; i++) {
+            em.getTransaction().begin();
+            Item item = em.createQuery("select i from Item i where i.id = :id", Item.class)
+                    .setParameter("id", itemId).getSingleResult();
+            // One seller load per transaction, the same shape as in the previous one
+            assertNotNull(item.getSeller().getUsername());
+            em.getTransaction().commit();
+            em.clear();
+        }
+        em.close();
+        detectingEmf.close();
+    }
+
+    @Test
+    public void countWithRegisteredDetector() {
+        storeTestData();
+        // Created by Hibernate from the class name in persistence.xml
+        NPlusOneDetector detector = NPlusOneDetector.registeredWith(emf);
+        detector.resetViolations();
+
+        EntityManager em = emf.createEntityManager();
+        em.getTransaction().begin();
+
+        List<Item> items = em.createQuery("select i from Item i", Item.class).getResultList();
+        for (Item item : items) {
+            assertNotNull(item.getSeller().getUsername());
+        }
+
+        em.getTransaction().commit();
+        em.close();
+
+        // 2 sellers loaded one by one, the second load is a violation
+        assertEquals(1, detector.getViolationCount());
+    }
+
+    @Test
+    public void countBidsAndUsers() {
+        NPlusOneDetector detector = new NPlusOneDetector(NPlusOneDetector.Mode.COUNT, 1);
+        EntityManagerFactory detectingEmf = createDetectingEmf(detector);
+
+        for (int i = 0; i < 2; i++) {
+            EntityManager em = detectingEmf.createEntityManager();
+            em.getTransaction().begin();
+
+            List<Item> items = em.createQuery("select i from Item i", Item.class).getResultList();
+            for (Item item : items) {
+                assertNotNull(item.getSeller().getUsername());
+                assertTrue(item.getBids().size() > 0);
+            }
+
+            em.getTransaction().commit();
+            em.close();
+        }
+
+        // Each unit of work loads 2 sellers and 3 bids collections one by one
+        Map<String, Long> violations = detector.getViolations();
+        assertAll(
+                () -> assertEquals(2, violations.size()),
+                () -> assertEquals(6, detector.getViolationCount())
+        );
+        detectingEmf.close();
+    }
+
 }
@@ -0,0 +1,118 @@
+/*
+ * ========================================================================
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * ========================================================================
+ */
+package com.manning.javapersistence.ch12.profile;
+
+import org.hibernate.Session;
+import org.hibernate.jpa.QueryHints;
+
+import javax.persistence.AttributeNode;
+import javax.persistence.EntityGraph;
+import javax.persistence.EntityManager;
+import javax.persistence.Subgraph;
+import javax.persistence.TypedQuery;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Applies fetch profiles and an entity graph to the operations of a single call site.
+ * Profiles enabled by the plan are disabled again when it is closed, so a
+ * <code>try</code>-with-resources block scopes them to that block.
+ */
+public class FetchPlan implements AutoCloseable {
+
+    private final EntityManager em;
+
+    private final Session session;
+
+    private final List<String> enabledProfiles = new ArrayList<>();
+
+    private EntityGraph<?> graph;
+
+    private FetchPlan(EntityManager em) {
+        this.em = em;
+        this.session = em.unwrap(Session.class);
+    }
+
+    public static FetchPlan with(EntityManager em) {
+        return new FetchPlan(em);
+    }
+
+    public FetchPlan profile(String name) {
+        if (!session.isFetchProfileEnabled(name)) {
+            session.enableFetchProfile(name);
+            enabledProfiles.add(name);
+        }
+        return this;
+    }
+
+    public FetchPlan graph(String name) {
+        return graph(em.getEntityGraph(name));
+    }
+
+    public FetchPlan graph(EntityGraph<?> graph) {
+        this.graph = graph;
+        return this;
+    }
+
+    public <T> T find(Class<T> entityClass, Object id) {
+        return graph == null
+                ? em.find(entityClass, id)
+                : em.find(entityClass, id, Map.of(QueryHints.HINT_LOADGRAPH, graph));
+    }
+
+    /**
+     * Collections in the graph are fetched with an outer join, which returns each root
+     * once per collection element; such queries should <code>select distinct</code>.
+     * The plan then keeps the <code>DISTINCT</code> out of the SQL, Hibernate removes
+     * the duplicate roots in memory.
+     */
+    public <T> TypedQuery<T> query(TypedQuery<T> query) {
+        if (graph == null) {
+            return query;
+        }
+        query.setHint(QueryHints.HINT_LOADGRAPH, graph);
+        if (fetchesCollection(graph.getAttributeNodes())) {
+            query.setHint(QueryHints.HINT_PASS_DISTINCT_THROUGH, false);
+        }
+        return query;
+    }
+
+    private static boolean fetchesCollection(List<AttributeNode<?>> nodes) {
+        for (AttributeNode<?> node : nodes) {
+            if (((org.hibernate.graph.AttributeNode<?>) node).getAttributeDescriptor().isCollection()) {
+                return true;
+            }
+            for (Subgraph<?> subgraph : node.getSubgraphs().values()) {
+                if (fetchesCollection(subgraph.getAttributeNodes())) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
+    @Override
+    public void close() {
+        enabledProfiles.forEach(session::disableFetchProfile);
+        enabledProfiles.clear();
+    }
+}
@@ -29,11 +29,16 @@ import java.util.Collections;
 import java.util.HashSet;
 import java.util.Set;
 
+@NamedEntityGraph(
+        name = Item.GRAPH_BIDS,
+        attributeNodes = @NamedAttributeNode("bids")
+)
 @Entity
 public class Item {
 
     public static final String PROFILE_JOIN_SELLER = "JoinSeller";
     public static final String PROFILE_JOIN_BIDS = "JoinBids";
+    public static final String GRAPH_BIDS = "ItemBids";
 
     @Id
     @GeneratedValue(generator = Constants.ID_GENERATOR)
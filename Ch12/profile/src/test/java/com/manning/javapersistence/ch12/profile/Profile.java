@@ -29,6 +29,7 @@ import javax.persistence.EntityManagerFactory;
 import javax.persistence.Persistence;
 import java.math.BigDecimal;
 import java.time.LocalDate;
+import java.util.List;
 
 import static org.junit.jupiter.api.Assertions.*;
 
@@ -37,7 +38,7 @@ public class Profile {
     private EntityManagerFactory emf =
             Persistence.createEntityManagerFactory("ch12");
 
-    private FetchTestData storeTestData() throws Exception {
+    private FetchTestData storeTestData() {
         EntityManager em = emf.createEntityManager();
         em.getTransaction().begin();
 
@@ -138,4 +139,49 @@ public class Profile {
         em.close();
     }
 
+    @Test
+    public void fetchWithPlan() {
+        FetchTestData testData = storeTestData();
+
+        EntityManager em = emf.createEntityManager();
+        em.getTransaction().begin();
+
+        Long ITEM_ID = testData.items.getFirstId();
+
+        Item item;
+        try (FetchPlan plan = FetchPlan.with(em).profile(Item.PROFILE_JOIN_SELLER)) {
+            item = plan.find(Item.class, ITEM_ID);
+            // select i.*, u.*
+            //  from ITEM i
+            //   inner join USERS u on u.ID = i.SELLER_ID
+            //  where i.ID = ?
+        }
+        assertAll(
+                () -> assertTrue(Hibernate.isInitialized(item.getSeller())),
+                () -> assertFalse(em.unwrap(Session.class).isFetchProfileEnabled(Item.PROFILE_JOIN_SELLER))
+        );
+
+        em.clear();
+        // The profile is only active inside the plan
+        Item lazyItem = em.find(Item.class, ITEM_ID);
+        assertFalse(Hibernate.isInitialized(lazyItem.getSeller()));
+
+        em.clear();
+        List<Item> items;
+        try (FetchPlan plan = FetchPlan.with(em).graph(Item.GRAPH_BIDS)) {
+            items = plan.query(em.createQuery("select distinct i from Item i", Item.class)).getResultList();
+            // select i.*, b.*
+            //  from ITEM i
+            //   left outer join BID b on b.ITEM_ID = i.ID
+        }
+        assertEquals(3, items.size());
+        for (Item i : items) {
+            assertTrue(Hibernate.isInitialized(i.getBids()));
+            assertFalse(Hibernate.isInitialized(i.getSeller()));
+        }
+
+        em.getTransaction().commit();
+        em.close();
+    }
+
 }
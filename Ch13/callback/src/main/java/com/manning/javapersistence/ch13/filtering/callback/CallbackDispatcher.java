@@ -0,0 +1,169 @@
+/*
+ * ========================================================================
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * ========================================================================
+ */
+package com.manning.javapersistence.ch13.filtering.callback;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.function.Consumer;
+
+/**
+ * Collects the events of entity listener callbacks and delivers them in batches on an
+ * executor, instead of running the callback work inline on the persisting thread.
+ * Entity listeners are created by the JPA engine, so the dispatcher is installed
+ * globally, like the <code>Log</code> singleton.
+ */
+public class CallbackDispatcher implements AutoCloseable {
+
+    private static volatile CallbackDispatcher installed;
+
+    public static void install(CallbackDispatcher dispatcher) {
+        installed = dispatcher;
+    }
+
+    public static CallbackDispatcher getInstalled() {
+        return installed;
+    }
+
+    private final ExecutorService executor;
+    private final int batchSize;
+    private final Consumer<List<CallbackEvent>> handler;
+    private final ConcurrentLinkedQueue<CompletableFuture<Void>> pending = new ConcurrentLinkedQueue<>();
+    private List<CallbackEvent> buffer;
+
+    public CallbackDispatcher(ExecutorService executor, int batchSize,
+                              Consumer<List<CallbackEvent>> handler) {
+        if (batchSize <= 0) {
+            throw new IllegalArgumentException("batchSize must be positive: " + batchSize);
+        }
+        this.executor = executor;
+        this.batchSize = batchSize;
+        this.handler = handler;
+        this.buffer = new ArrayList<>(batchSize);
+    }
+
+    /**
+     * Delivers on a new virtual thread per batch when the JVM supports them (Java 21 and
+     * later), otherwise on a single platform thread.
+     */
+    public static CallbackDispatcher withVirtualThreads(int batchSize,
+                                                       Consumer<List<CallbackEvent>> handler) {
+        ExecutorService executor;
+        try {
+            executor = (ExecutorService) Executors.class
+                    .getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+        } catch (ReflectiveOperationException e) {
+            executor = Executors.newSingleThreadExecutor();
+        }
+        return new CallbackDispatcher(executor, batchSize, handler);
+    }
+
+    /**
+     * Writes each batch to the <code>Log</code> singleton, with the same messages
+     * as <code>PersistEntityListener</code>.
+     */
+    public static Consumer<List<CallbackEvent>> logHandler() {
+        return events -> {
+            Log log = Log.INSTANCE;
+            synchronized (log) {
+                for (CallbackEvent event : events) {
+                    log.save(
+                            "Entity instance persisted by "
+                                    + event.getUsername()
+                                    + ": "
+                                    + event.getEntitySnapshot()
+                    );
+                }
+            }
+        };
+    }
+
+    public void dispatch(CallbackEvent event) {
+        List<CallbackEvent> full = null;
+        synchronized (this) {
+            buffer.add(event);
+            if (buffer.size() >= batchSize) {
+                full = buffer;
+                buffer = new ArrayList<>(batchSize);
+            }
+        }
+        if (full != null) {
+            submit(full);
+        }
+    }
+
+    /**
+     * Delivers the buffered events and waits until all batches have been handled.
+     */
+    public void flush() {
+        List<CallbackEvent> rest;
+        synchronized (this) {
+            rest = buffer;
+            buffer = new ArrayList<>(batchSize);
+        }
+        if (!rest.isEmpty()) {
+            submit(rest);
+        }
+        CompletableFuture<Void> batch;
+        while ((batch = pending.poll()) != null) {
+            batch.join();
+        }
+    }
+
+    private void submit(List<CallbackEvent> batch) {
+        pending.removeIf(CompletableFuture::isDone);
+        pending.add(CompletableFuture.runAsync(() -> deliver(batch), executor));
+    }
+
+    /* 
+       The handler runs with the <code>CurrentUser</code> of the persisting thread:
+       the batch is delivered in runs of events captured for the same user, and the
+       thread-local is restored afterwards, as executor threads are reused.
+     */
+    private void deliver(List<CallbackEvent> batch) {
+        User previousUser = CurrentUser.INSTANCE.get();
+        try {
+            int start = 0;
+            while (start < batch.size()) {
+                User user = batch.get(start).getCurrentUser();
+                int end = start + 1;
+                while (end < batch.size() && Objects.equals(batch.get(end).getCurrentUser(), user)) {
+                    end++;
+                }
+                CurrentUser.INSTANCE.set(user);
+                handler.accept(batch.subList(start, end));
+                start = end;
+            }
+        } finally {
+            CurrentUser.INSTANCE.set(previousUser);
+        }
+    }
+
+    @Override
+    public void close() {
+        flush();
+        executor.shutdown();
+    }
+}
@@ -0,0 +1,56 @@
+/*
+ * ========================================================================
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * ========================================================================
+ */
+package com.manning.javapersistence.ch13.filtering.callback;
+
+/**
+ * The context of a callback, captured on the persisting thread: the current user
+ * and a snapshot of the entity instance as it was when it was persisted.
+ */
+public class CallbackEvent {
+
+    private final User currentUser;
+    private final String username;
+    private final Class<?> entityClass;
+    private final String entitySnapshot;
+
+    public CallbackEvent(User currentUser, Object entityInstance) {
+        this.currentUser = currentUser;
+        this.username = currentUser != null ? currentUser.getUsername() : null;
+        this.entityClass = entityInstance.getClass();
+        this.entitySnapshot = String.valueOf(entityInstance);
+    }
+
+    public User getCurrentUser() {
+        return currentUser;
+    }
+
+    public String getUsername() {
+        return username;
+    }
+
+    public Class<?> getEntityClass() {
+        return entityClass;
+    }
+
+    public String getEntitySnapshot() {
+        return entitySnapshot;
+    }
+}
@@ -45,6 +45,17 @@ public class PersistEntityListener {
            <code>CurrentUser</code> and <code>Log</code> in the example code.
          */
         User currentUser = CurrentUser.INSTANCE.get();
+
+        /* 
+           With an installed <code>CallbackDispatcher</code>, only the context of the
+           callback is captured here; the message is written later, in a batch.
+         */
+        CallbackDispatcher dispatcher = CallbackDispatcher.getInstalled();
+        if (dispatcher != null) {
+            dispatcher.dispatch(new CallbackEvent(currentUser, entityInstance));
+            return;
+        }
+
         Log log = Log.INSTANCE;
 
         log.save(
@@ -20,6 +20,8 @@
  */
 package com.manning.javapersistence.ch13.filtering;
 
+import com.manning.javapersistence.ch13.filtering.callback.CallbackDispatcher;
+import com.manning.javapersistence.ch13.filtering.callback.CallbackEvent;
 import com.manning.javapersistence.ch13.filtering.callback.CurrentUser;
 import com.manning.javapersistence.ch13.filtering.callback.Item;
 import com.manning.javapersistence.ch13.filtering.callback.Log;
@@ -29,8 +31,15 @@ import org.junit.jupiter.api.Test;
 import javax.persistence.EntityManager;
 import javax.persistence.EntityManagerFactory;
 import javax.persistence.Persistence;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
 import static org.junit.jupiter.api.Assertions.assertTrue;
 
 public class Callback {
@@ -71,4 +80,75 @@ public class Callback {
 
     }
 
+    @Test
+    public void notifyPostPersistInBatches() {
+        Set<Thread> deliveryThreads = ConcurrentHashMap.newKeySet();
+        AtomicInteger batches = new AtomicInteger();
+        AtomicInteger wrongContext = new AtomicInteger();
+        Consumer<List<CallbackEvent>> handler = events -> {
+            batches.incrementAndGet();
+            deliveryThreads.add(Thread.currentThread());
+            // the thread-local of the persisting thread is visible on the delivery thread
+            events.stream()
+                    .filter(event -> CurrentUser.INSTANCE.get() != event.getCurrentUser())
+                    .forEach(event -> wrongContext.incrementAndGet());
+            CallbackDispatcher.logHandler().accept(events);
+        };
+
+        try (CallbackDispatcher dispatcher =
+                     new CallbackDispatcher(Executors.newFixedThreadPool(2), 10, handler)) {
+            persistItems(dispatcher);
+
+            assertEquals(0, wrongContext.get());
+            assertTrue(batches.get() >= 3);
+            assertFalse(deliveryThreads.contains(Thread.currentThread()));
+        }
+    }
+
+    @Test
+    public void notifyPostPersistOnVirtualThreads() {
+        try (CallbackDispatcher dispatcher =
+                     CallbackDispatcher.withVirtualThreads(10, CallbackDispatcher.logHandler())) {
+            persistItems(dispatcher);
+        }
+    }
+
+    private void persistItems(CallbackDispatcher dispatcher) {
+        EntityManager em = emf.createEntityManager();
+        em.getTransaction().begin();
+
+        User johndoe = new User("johndoe");
+        User janeroe = new User("janeroe");
+        CurrentUser.INSTANCE.set(johndoe);
+        em.persist(johndoe);
+        em.persist(janeroe);
+        em.flush();
+        Log.INSTANCE.clear();
+
+        CallbackDispatcher.install(dispatcher);
+        try {
+            for (int i = 0; i < 25; i++) {
+                em.persist(new Item("Item " + i, johndoe));
+            }
+            em.flush();
+            CurrentUser.INSTANCE.set(janeroe);
+            for (int i = 0; i < 5; i++) {
+                em.persist(new Item("Other item " + i, janeroe));
+            }
+            em.flush();
+
+            dispatcher.flush();
+            assertEquals(30, Log.INSTANCE.size());
+            assertEquals(25, Log.INSTANCE.stream().filter(message -> message.contains("johndoe")).count());
+            assertEquals(5, Log.INSTANCE.stream().filter(message -> message.contains("janeroe")).count());
+        } finally {
+            CallbackDispatcher.install(null);
+            CurrentUser.INSTANCE.set(null);
+            Log.INSTANCE.clear();
+        }
+
+        em.getTransaction().rollback();
+        em.close();
+    }
+
 }
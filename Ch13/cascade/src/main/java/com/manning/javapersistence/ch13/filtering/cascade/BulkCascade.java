@@ -0,0 +1,158 @@
+/*
+ * ========================================================================
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * ========================================================================
+ */
+package com.manning.javapersistence.ch13.filtering.cascade;
+
+import org.hibernate.Session;
+import org.hibernate.SessionFactory;
+import org.hibernate.engine.spi.EntityEntry;
+import org.hibernate.engine.spi.SessionImplementor;
+
+import javax.persistence.EntityManager;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Removes or detaches whole <code>User</code> and <code>Item</code> graphs level by
+ * level: the identifiers of each level are selected with one query, then each level
+ * is deleted with <code>DELETE ... WHERE ID IN (...)</code> in foreign key order,
+ * instead of cascading to one instance after the other.
+ */
+public class BulkCascade {
+
+    static final int MAX_IN_LIST = 1000;
+
+    private final EntityManager em;
+
+    public BulkCascade(EntityManager em) {
+        this.em = em;
+    }
+
+    /**
+     * Deletes the users, their billing details, their items and the bids of these items.
+     * Returns the number of deleted rows per entity, in the order of deletion.
+     */
+    public Map<Class<?>, Integer> removeUsers(Collection<Long> userIds) {
+        em.flush();
+        Set<Long> itemIds = select("select i.id from Item i where i.seller.id in :ids", userIds);
+        Set<Long> bidIds = select("select b.id from Bid b where b.item.id in :ids", itemIds);
+        Set<Long> billingDetailsIds = select(
+                "select bd.id from User u join u.billingDetails bd where u.id in :ids", userIds);
+
+        Map<Class<?>, Set<Long>> affected = new LinkedHashMap<>();
+        affected.put(Bid.class, bidIds);
+        affected.put(Item.class, itemIds);
+        affected.put(BillingDetails.class, billingDetailsIds);
+        affected.put(User.class, new HashSet<>(userIds));
+        return delete(affected);
+    }
+
+    /**
+     * Deletes the items and their bids.
+     */
+    public Map<Class<?>, Integer> removeItems(Collection<Long> itemIds) {
+        em.flush();
+        Map<Class<?>, Set<Long>> affected = new LinkedHashMap<>();
+        affected.put(Bid.class, select("select b.id from Bid b where b.item.id in :ids", itemIds));
+        affected.put(Item.class, new HashSet<>(itemIds));
+        return delete(affected);
+    }
+
+    /**
+     * Detaches the items and their bids with one pass over the persistence context.
+     */
+    public void detachItems(Collection<Long> itemIds) {
+        Map<Class<?>, Set<Long>> affected = new LinkedHashMap<>();
+        affected.put(Bid.class, select("select b.id from Bid b where b.item.id in :ids", itemIds));
+        affected.put(Item.class, new HashSet<>(itemIds));
+        evict(affected);
+    }
+
+    private Set<Long> select(String query, Collection<Long> ids) {
+        Set<Long> result = new HashSet<>();
+        for (List<Long> chunk : chunks(ids)) {
+            result.addAll(em.createQuery(query, Long.class)
+                    .setParameter("ids", chunk)
+                    .getResultList());
+        }
+        return result;
+    }
+
+    private Map<Class<?>, Integer> delete(Map<Class<?>, Set<Long>> affected) {
+        evict(affected);
+        Map<Class<?>, Integer> deleted = new LinkedHashMap<>();
+        for (Map.Entry<Class<?>, Set<Long>> level : affected.entrySet()) {
+            int rows = 0;
+            for (List<Long> chunk : chunks(level.getValue())) {
+                // BillingDetails spans several tables, Hibernate deletes from each of them
+                rows += em.createQuery("delete from " + level.getKey().getSimpleName() + " e where e.id in :ids")
+                        .setParameter("ids", chunk)
+                        .executeUpdate();
+            }
+            deleted.put(level.getKey(), rows);
+        }
+        return deleted;
+    }
+
+    /* 
+       Removes the affected instances and collections from the persistence context and
+       from the second-level cache, so that neither returns rows deleted in bulk.
+     */
+    private void evict(Map<Class<?>, Set<Long>> affected) {
+        Session session = em.unwrap(Session.class);
+        List<Object> instances = new ArrayList<>();
+        for (Map.Entry<Object, EntityEntry> entry :
+                ((SessionImplementor) session).getPersistenceContext().reentrantSafeEntityEntries()) {
+            for (Map.Entry<Class<?>, Set<Long>> level : affected.entrySet()) {
+                if (level.getKey().isInstance(entry.getKey())
+                        && level.getValue().contains(entry.getValue().getId())) {
+                    instances.add(entry.getKey());
+                }
+            }
+        }
+        instances.forEach(session::evict);
+
+        org.hibernate.Cache cache = em.getEntityManagerFactory().unwrap(SessionFactory.class).getCache();
+        for (Map.Entry<Class<?>, Set<Long>> level : affected.entrySet()) {
+            for (Long id : level.getValue()) {
+                cache.evictEntityData(level.getKey(), id);
+                if (level.getKey() == Item.class) {
+                    cache.evictCollectionData(Item.class.getName() + ".bids", id);
+                } else if (level.getKey() == User.class) {
+                    cache.evictCollectionData(User.class.getName() + ".billingDetails", id);
+                }
+            }
+        }
+    }
+
+    private static List<List<Long>> chunks(Collection<Long> ids) {
+        List<Long> all = new ArrayList<>(ids);
+        List<List<Long>> chunks = new ArrayList<>();
+        for (int i = 0; i < all.size(); i += MAX_IN_LIST) {
+            chunks.add(all.subList(i, Math.min(all.size(), i + MAX_IN_LIST)));
+        }
+        return chunks;
+    }
+}
@@ -30,10 +30,15 @@ import javax.persistence.EntityManagerFactory;
 import javax.persistence.Persistence;
 import java.math.BigDecimal;
 import java.sql.PreparedStatement;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
 import java.util.concurrent.Executors;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
 import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
 
 
 public class Cascade {
@@ -281,4 +286,68 @@ public class Cascade {
 
     }
 
+    @Test
+    public void bulkRemove() {
+        EntityManager em = emf.createEntityManager();
+        em.getTransaction().begin();
+
+        List<Long> USER_IDS = new ArrayList<>();
+        List<Long> ITEM_IDS = new ArrayList<>();
+        for (int u = 0; u < 4; u++) {
+            User user = new User("user" + u);
+            user.addBillingDetails(new CreditCard("Owner " + u, "1234567890", "11", "2030"));
+            user.addBillingDetails(new BankAccount("Owner " + u, "45678", "Some Bank", "1234"));
+            em.persist(user);
+            USER_IDS.add(user.getId());
+            for (int i = 0; i < 3; i++) {
+                Item item = new Item("Item " + u + "-" + i, user);
+                em.persist(item);
+                ITEM_IDS.add(item.getId());
+                for (int b = 0; b < 4; b++) {
+                    Bid bid = new Bid(new BigDecimal(100 + b), item);
+                    item.addBid(bid);
+                    em.persist(bid);
+                }
+            }
+        }
+        em.getTransaction().commit();
+        em.clear();
+
+        em.getTransaction().begin();
+        Item loadedItem = em.find(Item.class, ITEM_IDS.get(0));
+        assertEquals(4, loadedItem.getBids().size());
+
+        BulkCascade bulkCascade = new BulkCascade(em);
+
+        // delete from BID where ID in (...)
+        // delete from ITEM where ID in (...)
+        // delete from CREDITCARD, BANKACCOUNT, BILLINGDETAILS where ID in (...)
+        // delete from USERS where ID in (...)
+        Map<Class<?>, Integer> deleted = bulkCascade.removeUsers(USER_IDS.subList(0, 3));
+        assertEquals(List.of(Bid.class, Item.class, BillingDetails.class, User.class),
+                new ArrayList<>(deleted.keySet()));
+        assertEquals(36, deleted.get(Bid.class));
+        assertEquals(9, deleted.get(Item.class));
+        assertEquals(6, deleted.get(BillingDetails.class));
+        assertEquals(3, deleted.get(User.class));
+
+        assertFalse(em.contains(loadedItem));
+        assertNull(em.find(Item.class, ITEM_IDS.get(0)));
+        assertNull(em.find(User.class, USER_IDS.get(0)));
+        assertEquals(2, em.find(User.class, USER_IDS.get(3)).getBillingDetails().size());
+
+        Item remainingItem = em.find(Item.class, ITEM_IDS.get(9));
+        assertEquals(4, remainingItem.getBids().size());
+        bulkCascade.detachItems(ITEM_IDS.subList(9, 12));
+        assertFalse(em.contains(remainingItem));
+
+        deleted = bulkCascade.removeItems(ITEM_IDS.subList(9, 12));
+        assertEquals(12, deleted.get(Bid.class));
+        assertEquals(3, deleted.get(Item.class));
+        assertEquals(0L, em.createQuery("select count(b) from Bid b").getSingleResult());
+
+        em.getTransaction().commit();
+        em.close();
+    }
+
 }
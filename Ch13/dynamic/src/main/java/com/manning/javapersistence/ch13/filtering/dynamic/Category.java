@@ -50,6 +50,10 @@ public class Category {
                             where u.ID = SELLER_ID
                             )"""
     )
+    @org.hibernate.annotations.Filter(
+            name = "limitBySellerRanking",
+            condition = ":currentUserRanking >= SELLER_RANKING"
+    )
     private Set<Item> items = new HashSet<>();
 
     public Category() {
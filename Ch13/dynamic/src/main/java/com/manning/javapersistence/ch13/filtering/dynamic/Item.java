@@ -34,6 +34,11 @@ import javax.validation.constraints.NotNull;
                 where u.ID = SELLER_ID
             )"""
 )
+@org.hibernate.annotations.Filter(
+    name = "limitBySellerRanking",
+    condition = ":currentUserRanking >= SELLER_RANKING"
+)
+@Table(indexes = @Index(name = "IDX_ITEM_SELLER_RANKING", columnList = "SELLER_RANKING"))
 public class Item {
 
     @Id
@@ -51,6 +56,15 @@ public class Item {
     @ManyToOne(fetch = FetchType.LAZY)
     private User seller;
 
+    /* 
+       A copy of the seller's ranking, set when the item is stored and kept current by the
+       <code>SellerRankingListener</code> when the ranking of a <code>User</code> changes.
+       The column is not updatable: an item loaded before the ranking changed would
+       otherwise write its stale copy back when it is updated.
+     */
+    @Column(name = "SELLER_RANKING", updatable = false)
+    private int sellerRanking;
+
     public Item() {
     }
 
@@ -80,4 +94,15 @@ public class Item {
         return seller;
     }
 
+    public int getSellerRanking() {
+        return sellerRanking;
+    }
+
+    @PrePersist
+    void copySellerRanking() {
+        if (seller != null) {
+            sellerRanking = seller.getRanking();
+        }
+    }
+
 }
@@ -0,0 +1,69 @@
+/*
+ * ========================================================================
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * ========================================================================
+ */
+package com.manning.javapersistence.ch13.filtering.dynamic;
+
+import org.hibernate.event.spi.PostUpdateEvent;
+import org.hibernate.event.spi.PostUpdateEventListener;
+import org.hibernate.persister.entity.AbstractEntityPersister;
+import org.hibernate.persister.entity.EntityPersister;
+
+import java.sql.PreparedStatement;
+import java.util.Objects;
+
+/**
+ * Copies a changed <code>User#ranking</code> to the <code>SELLER_RANKING</code> column
+ * of all items of that seller, in the same transaction as the update of the user.
+ */
+public class SellerRankingListener implements PostUpdateEventListener {
+
+    @Override
+    public void onPostUpdate(PostUpdateEvent event) {
+        if (!(event.getEntity() instanceof User user)) {
+            return;
+        }
+        int ranking = event.getPersister().getEntityMetamodel().getPropertyIndex("ranking");
+        if (event.getOldState() != null
+                && Objects.equals(event.getOldState()[ranking], event.getState()[ranking])) {
+            return;
+        }
+
+        /* 
+           The flush is still running, so the update is executed on the JDBC connection
+           of the session instead of through a query, which could trigger another flush.
+         */
+        AbstractEntityPersister itemPersister = (AbstractEntityPersister)
+                event.getSession().getFactory().getMetamodel().entityPersister(Item.class);
+        String sql = "update " + itemPersister.getTableName() +
+                " set SELLER_RANKING = ? where " + itemPersister.getPropertyColumnNames("seller")[0] + " = ?";
+        event.getSession().doWork(connection -> {
+            try (PreparedStatement statement = connection.prepareStatement(sql)) {
+                statement.setInt(1, user.getRanking());
+                statement.setLong(2, user.getId());
+                statement.executeUpdate();
+            }
+        });
+    }
+
+    @Override
+    public boolean requiresPostCommitHanding(EntityPersister persister) {
+        return false;
+    }
+}
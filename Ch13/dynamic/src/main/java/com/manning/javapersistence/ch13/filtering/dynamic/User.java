@@ -69,4 +69,8 @@ public class User {
     public int getRanking() {
         return ranking;
     }
+
+    public void setRanking(int ranking) {
+        this.ranking = ranking;
+    }
 }
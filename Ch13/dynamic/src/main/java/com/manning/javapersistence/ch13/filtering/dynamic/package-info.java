@@ -28,6 +28,15 @@
         }
     )
     ,
+    @org.hibernate.annotations.FilterDef(
+        name = "limitBySellerRanking",
+        parameters = {
+            @org.hibernate.annotations.ParamDef(
+                name = "currentUserRanking", type = "int"
+            )
+        }
+    )
+    ,
     @org.hibernate.annotations.FilterDef(
         name = "limitByUserRankingDefault",
         defaultCondition= """
@@ -23,7 +23,9 @@ package com.manning.javapersistence.ch13.filtering;
 import com.manning.javapersistence.ch13.filtering.dynamic.Category;
 import com.manning.javapersistence.ch13.filtering.dynamic.Item;
 import com.manning.javapersistence.ch13.filtering.dynamic.User;
+import org.hibernate.Hibernate;
 import org.hibernate.Session;
+import org.hibernate.resource.jdbc.spi.StatementInspector;
 import org.junit.jupiter.api.Test;
 
 import javax.persistence.EntityManager;
@@ -31,9 +33,13 @@ import javax.persistence.EntityManagerFactory;
 import javax.persistence.Persistence;
 import javax.persistence.criteria.CriteriaBuilder;
 import javax.persistence.criteria.CriteriaQuery;
+import java.util.ArrayList;
 import java.util.List;
+import java.util.Map;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
 
 public class DynamicFilter {
 
@@ -47,6 +53,10 @@ public class DynamicFilter {
     }
 
     private DynamicFilterTestData storeTestData() {
+        return storeTestData(emf);
+    }
+
+    private DynamicFilterTestData storeTestData(EntityManagerFactory emf) {
         EntityManager em = emf.createEntityManager();
         em.getTransaction().begin();
 
@@ -157,4 +167,144 @@ public class DynamicFilter {
 
     }
 
+    @Test
+    public void filterItemsBySellerRanking() {
+        DynamicFilterTestData testData = storeTestData();
+
+        EntityManager em = emf.createEntityManager();
+        em.getTransaction().begin();
+        {
+            org.hibernate.Filter filter = em.unwrap(Session.class)
+                    .enableFilter("limitBySellerRanking");
+
+            filter.setParameter("currentUserRanking", 0);
+            List<Item> items = em.createQuery("select i from Item i", Item.class).getResultList();
+            // select * from ITEM where 0 >= SELLER_RANKING
+            assertEquals(1, items.size());
+            em.clear();
+
+            filter.setParameter("currentUserRanking", 100);
+            items = em.createQuery("select i from Item i", Item.class).getResultList();
+            assertEquals(3, items.size());
+            em.clear();
+
+            // the ranking of janeroe drops, her items follow
+            em.find(User.class, testData.users.getLastId()).setRanking(0);
+            em.flush();
+            em.clear();
+
+            filter.setParameter("currentUserRanking", 0);
+            items = em.createQuery("select i from Item i", Item.class).getResultList();
+            assertEquals(3, items.size());
+
+            Category category = em.find(Category.class, testData.categories.getFirstId());
+            assertEquals(2, category.getItems().size());
+        }
+        em.getTransaction().commit();
+        em.close();
+    }
+
+    @Test
+    public void updateItemWithoutLoadingSeller() {
+        DynamicFilterTestData testData = storeTestData();
+
+        EntityManager em = emf.createEntityManager();
+        em.getTransaction().begin();
+        Item item = em.find(Item.class, testData.items.getLastId());
+        item.setName("Qux");
+        em.flush();
+        // update ITEM set CATEGORY_ID = ?, NAME = ?, SELLER_ID = ? where ID = ?
+        assertFalse(Hibernate.isInitialized(item.getSeller()));
+        assertEquals(100, item.getSellerRanking());
+        em.getTransaction().commit();
+        em.close();
+    }
+
+    @Test
+    public void updateStaleItemAfterRankingChange() {
+        DynamicFilterTestData testData = storeTestData();
+
+        EntityManager em = emf.createEntityManager();
+        em.getTransaction().begin();
+        Item item = em.find(Item.class, testData.items.getLastId());
+        assertEquals(100, item.getSellerRanking());
+
+        {
+            // meanwhile, the ranking of janeroe drops in another transaction
+            EntityManager other = emf.createEntityManager();
+            other.getTransaction().begin();
+            other.find(User.class, testData.users.getLastId()).setRanking(0);
+            other.getTransaction().commit();
+            other.close();
+        }
+
+        item.setName("Qux");
+        em.getTransaction().commit();
+        em.close();
+        // update ITEM set CATEGORY_ID = ?, NAME = ?, SELLER_ID = ? where ID = ?
+
+        em = emf.createEntityManager();
+        em.getTransaction().begin();
+        em.unwrap(Session.class).enableFilter("limitBySellerRanking")
+                .setParameter("currentUserRanking", 0);
+        List<Item> items = em.createQuery("select i from Item i", Item.class).getResultList();
+        assertEquals(3, items.size());
+        assertEquals(0, em.find(Item.class, testData.items.getLastId()).getSellerRanking());
+        em.getTransaction().commit();
+        em.close();
+    }
+
+    static class CapturingStatementInspector implements StatementInspector {
+        private final List<String> statements = new ArrayList<>();
+
+        @Override
+        public String inspect(String sql) {
+            statements.add(sql);
+            return sql;
+        }
+    }
+
+    @Test
+    public void sellerRankingFilterHasNoCorrelatedSubquery() {
+        CapturingStatementInspector inspector = new CapturingStatementInspector();
+        EntityManagerFactory emf = Persistence.createEntityManagerFactory("ch13",
+                Map.of("hibernate.session_factory.statement_inspector", inspector));
+        try {
+            storeTestData(emf);
+
+            EntityManager em = emf.createEntityManager();
+            em.getTransaction().begin();
+            Session session = em.unwrap(Session.class);
+
+            session.enableFilter("limitByUserRanking").setParameter("currentUserRanking", 0);
+            List<Object[]> correlatedPlan = explainLastQuery(em, inspector);
+            session.disableFilter("limitByUserRanking");
+
+            session.enableFilter("limitBySellerRanking").setParameter("currentUserRanking", 0);
+            List<Object[]> materializedPlan = explainLastQuery(em, inspector);
+
+            // EXPLAIN columns: id, select_type, table, partitions, type, possible_keys, key, ...
+            assertTrue(correlatedPlan.stream().anyMatch(row -> "DEPENDENT SUBQUERY".equals(row[1])));
+            assertFalse(materializedPlan.stream().anyMatch(row -> String.valueOf(row[1]).contains("SUBQUERY")));
+            assertEquals(1, materializedPlan.size());
+
+            em.getTransaction().commit();
+            em.close();
+        } finally {
+            emf.close();
+        }
+    }
+
+    private List<Object[]> explainLastQuery(EntityManager em, CapturingStatementInspector inspector) {
+        em.createQuery("select i from Item i", Item.class).getResultList();
+        String sql = inspector.statements.get(inspector.statements.size() - 1);
+        // the only JDBC parameter is the filter parameter
+        List<?> plan = em.createNativeQuery("explain " + sql.replace("?", "0")).getResultList();
+        List<Object[]> rows = new ArrayList<>();
+        for (Object row : plan) {
+            rows.add(row instanceof Object[] columns ? columns : new Object[]{row});
+        }
+        return rows;
+    }
+
 }
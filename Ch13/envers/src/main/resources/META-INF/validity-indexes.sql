@@ -0,0 +1,2 @@
+CREATE INDEX IDX_ITEM_AUD_REVEND_REV ON Item_AUD (REVEND, REV)
+CREATE INDEX IDX_USERS_AUD_REVEND_REV ON USERS_AUD (REVEND, REV)
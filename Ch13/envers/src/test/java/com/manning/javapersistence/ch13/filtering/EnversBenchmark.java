@@ -0,0 +1,122 @@
+/*
+ * ========================================================================
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * ========================================================================
+ */
+package com.manning.javapersistence.ch13.filtering;
+
+import com.manning.javapersistence.ch13.filtering.envers.Item;
+import com.manning.javapersistence.ch13.filtering.envers.User;
+import org.hibernate.envers.AuditReader;
+import org.hibernate.envers.AuditReaderFactory;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+
+import javax.persistence.EntityManager;
+import javax.persistence.EntityManagerFactory;
+import javax.persistence.Persistence;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+// run with: mvn test -Dtest=EnversBenchmark -Dbenchmark=true
+@EnabledIfSystemProperty(named = "benchmark", matches = "true")
+public class EnversBenchmark {
+
+    private static final int ITEMS = 10_000;
+    private static final int ITEMS_PER_TRANSACTION = 100;
+    private static final int UPDATE_TRANSACTIONS = 200;
+
+    @Test
+    public void defaultAuditStrategy() {
+        writeAndReadRevisions("ch13");
+    }
+
+    /* 
+       Both persistence units write the _AUD rows in JDBC batches, "ch13_validity"
+       additionally uses the validity audit strategy with the REVEND indexes.
+     */
+    @Test
+    public void validityAuditStrategy() {
+        writeAndReadRevisions("ch13_validity");
+    }
+
+    private void writeAndReadRevisions(String persistenceUnit) {
+        EntityManagerFactory emf = Persistence.createEntityManagerFactory(persistenceUnit,
+                Map.of("hibernate.show_sql", "false"));
+        try {
+            List<Long> itemIds = new ArrayList<>();
+            long start = System.nanoTime();
+            EntityManager em = emf.createEntityManager();
+            em.getTransaction().begin();
+            User user = new User("johndoe");
+            em.persist(user);
+            em.getTransaction().commit();
+            for (int i = 0; i < ITEMS; i += ITEMS_PER_TRANSACTION) {
+                em.getTransaction().begin();
+                for (int j = i; j < i + ITEMS_PER_TRANSACTION; j++) {
+                    Item item = new Item("Item " + j, user);
+                    em.persist(item);
+                    itemIds.add(item.getId());
+                }
+                em.getTransaction().commit();
+                em.clear();
+                user = em.find(User.class, user.getId());
+            }
+            long insertTime = System.nanoTime() - start;
+
+            start = System.nanoTime();
+            for (int i = 0; i < UPDATE_TRANSACTIONS; i++) {
+                em.getTransaction().begin();
+                for (int j = 0; j < ITEMS_PER_TRANSACTION; j++) {
+                    Long id = itemIds.get((i * ITEMS_PER_TRANSACTION + j * 7) % ITEMS);
+                    em.find(Item.class, id).setName("Item " + id + " rev " + i);
+                }
+                em.getTransaction().commit();
+                em.clear();
+            }
+            long updateTime = System.nanoTime() - start;
+            em.close();
+
+            System.out.println(persistenceUnit + ": " + ITEMS + " inserts " + insertTime / 1_000_000 +
+                    " ms, " + UPDATE_TRANSACTIONS * ITEMS_PER_TRANSACTION + " updates " +
+                    updateTime / 1_000_000 + " ms");
+
+            em = emf.createEntityManager();
+            em.getTransaction().begin();
+            AuditReader auditReader = AuditReaderFactory.get(em);
+            Number lastRevision = auditReader.getRevisionNumberForDate(new Date());
+            for (int step = 1; step <= 4; step++) {
+                Number revision = lastRevision.intValue() * step / 4;
+                em.clear();
+                start = System.nanoTime();
+                Map<Long, String> names = EnversValidity.namesAtRevision(auditReader, revision);
+                System.out.println(persistenceUnit + ": state at revision " + revision + " (" +
+                        names.size() + " items) " + (System.nanoTime() - start) / 1_000_000 + " ms");
+            }
+            assertEquals(ITEMS, EnversValidity.namesAtRevision(auditReader, lastRevision).size());
+            em.getTransaction().commit();
+            em.close();
+        } finally {
+            emf.close();
+        }
+    }
+}
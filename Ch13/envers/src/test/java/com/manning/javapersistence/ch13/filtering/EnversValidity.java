@@ -0,0 +1,135 @@
+/*
+ * ========================================================================
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * ========================================================================
+ */
+package com.manning.javapersistence.ch13.filtering;
+
+import com.manning.javapersistence.ch13.filtering.envers.Item;
+import com.manning.javapersistence.ch13.filtering.envers.User;
+import org.hibernate.SessionFactory;
+import org.hibernate.envers.AuditReader;
+import org.hibernate.envers.AuditReaderFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.Test;
+
+import javax.persistence.EntityManager;
+import javax.persistence.EntityManagerFactory;
+import javax.persistence.Persistence;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+public class EnversValidity {
+
+    private EntityManagerFactory emf =
+            Persistence.createEntityManagerFactory("ch13_validity",
+                    Map.of("hibernate.generate_statistics", "true"));
+
+    @Test
+    public void stateAtRevision() {
+        Long ITEM_ID;
+        Long OTHER_ITEM_ID;
+        {
+            EntityManager em = emf.createEntityManager();
+            em.getTransaction().begin();
+            User user = new User("johndoe");
+            em.persist(user);
+            Item item = new Item("Foo", user);
+            em.persist(item);
+            Item otherItem = new Item("Baz", user);
+            em.persist(otherItem);
+            for (int i = 0; i < 100; i++) {
+                em.persist(new Item("Item " + i, user));
+            }
+            em.getTransaction().commit();
+            em.close();
+            ITEM_ID = item.getId();
+            OTHER_ITEM_ID = otherItem.getId();
+        }
+        {
+            EntityManager em = emf.createEntityManager();
+            em.getTransaction().begin();
+            em.find(Item.class, ITEM_ID).setName("Bar");
+            em.getTransaction().commit();
+            em.close();
+        }
+        {
+            EntityManager em = emf.createEntityManager();
+            em.getTransaction().begin();
+            em.remove(em.find(Item.class, OTHER_ITEM_ID));
+            em.getTransaction().commit();
+            em.close();
+        }
+
+        EntityManager em = emf.createEntityManager();
+        em.getTransaction().begin();
+        AuditReader auditReader = AuditReaderFactory.get(em);
+        List<Number> revisions = auditReader.getRevisions(Item.class, ITEM_ID);
+        Number revisionCreate = revisions.get(0);
+        Number revisionUpdate = revisions.get(1);
+        Number revisionDelete = auditReader.getRevisions(Item.class, OTHER_ITEM_ID).get(1);
+
+        /* 
+           The validity strategy stores in <code>REVEND</code> the revision that replaced
+           an audit row; the current row of an entity has no <code>REVEND</code>.
+         */
+        @SuppressWarnings("unchecked")
+        List<Object[]> validity = em.createNativeQuery(
+                "select REV, REVEND from Item_AUD where ID = :id order by REV")
+                .setParameter("id", ITEM_ID)
+                .getResultList();
+        assertEquals(2, validity.size());
+        assertEquals(revisionUpdate.intValue(), ((Number) validity.get(0)[1]).intValue());
+        assertNull(validity.get(1)[1]);
+
+        /* 
+           The state of all items at a revision is read with one statement:
+           <code>REV &lt;= :rev and (REVEND &gt; :rev or REVEND is null)</code>
+         */
+        Statistics statistics = emf.unwrap(SessionFactory.class).getStatistics();
+        statistics.clear();
+        Map<Long, String> atCreate = namesAtRevision(auditReader, revisionCreate);
+        assertEquals(1, statistics.getPrepareStatementCount());
+        assertEquals(102, atCreate.size());
+        assertEquals("Foo", atCreate.get(ITEM_ID));
+
+        Map<Long, String> atUpdate = namesAtRevision(auditReader, revisionUpdate);
+        assertEquals(102, atUpdate.size());
+        assertEquals("Bar", atUpdate.get(ITEM_ID));
+        assertEquals("Baz", atUpdate.get(OTHER_ITEM_ID));
+
+        Map<Long, String> atDelete = namesAtRevision(auditReader, revisionDelete);
+        assertEquals(101, atDelete.size());
+        assertNull(atDelete.get(OTHER_ITEM_ID));
+
+        em.getTransaction().commit();
+        em.close();
+    }
+
+    static Map<Long, String> namesAtRevision(AuditReader auditReader, Number revision) {
+        @SuppressWarnings("unchecked")
+        List<Item> items = auditReader.createQuery()
+                .forEntitiesAtRevision(Item.class, revision)
+                .getResultList();
+        return items.stream().collect(Collectors.toMap(Item::getId, Item::getName));
+    }
+}
@@ -0,0 +1,167 @@
+/*
+ * ========================================================================
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * ========================================================================
+ */
+package com.manning.javapersistence.ch13.filtering.interceptor;
+
+import java.io.ByteArrayOutputStream;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Objects;
+
+/**
+ * Binary encoding of the properties changed between two entity states, as passed to
+ * <code>Interceptor.onFlushDirty()</code>. Each changed property is written as its
+ * name followed by a type tag and the new value; names, strings and other values are
+ * UTF-8 with a varint length, integers are zig-zag varints. Keying by name instead of
+ * position keeps old diffs readable after properties are added or reordered.
+ * Collections are not encoded.
+ */
+public final class AuditDiff {
+
+    private static final int NULL = 0;
+    private static final int STRING = 1;
+    private static final int LONG = 2;
+    private static final int INTEGER = 3;
+    private static final int TRUE = 4;
+    private static final int FALSE = 5;
+    private static final int DECIMAL = 6;
+    private static final int TEXT = 7;
+
+    private AuditDiff() {
+    }
+
+    /**
+     * Encodes every property of <code>currentState</code> that differs from
+     * <code>previousState</code>; a <code>null</code> previous state, as for an
+     * insert, encodes all non-null properties.
+     */
+    public static byte[] encode(String[] propertyNames, Object[] previousState, Object[] currentState) {
+        ByteArrayOutputStream out = new ByteArrayOutputStream(32);
+        for (int i = 0; i < currentState.length; i++) {
+            Object value = currentState[i];
+            if (value instanceof Collection || value instanceof Map) {
+                continue;
+            }
+            boolean changed = previousState == null
+                    ? value != null
+                    : !Objects.equals(previousState[i], value);
+            if (changed) {
+                writeString(out, propertyNames[i]);
+                writeValue(out, value);
+            }
+        }
+        return out.toByteArray();
+    }
+
+    /**
+     * Decodes a diff to the changed values keyed by property name. Values that were
+     * neither strings, numbers nor booleans are returned as their string form.
+     */
+    public static Map<String, Object> decode(byte[] diff) {
+        Map<String, Object> values = new LinkedHashMap<>();
+        int[] position = {0};
+        while (position[0] < diff.length) {
+            String propertyName = readString(diff, position);
+            values.put(propertyName, readValue(diff, position));
+        }
+        return values;
+    }
+
+    private static void writeValue(ByteArrayOutputStream out, Object value) {
+        if (value == null) {
+            out.write(NULL);
+        } else if (value instanceof String s) {
+            out.write(STRING);
+            writeString(out, s);
+        } else if (value instanceof Long l) {
+            out.write(LONG);
+            writeVarint(out, zigZag(l));
+        } else if (value instanceof Integer || value instanceof Short || value instanceof Byte) {
+            out.write(INTEGER);
+            writeVarint(out, zigZag(((Number) value).longValue()));
+        } else if (value instanceof Boolean b) {
+            out.write(b ? TRUE : FALSE);
+        } else if (value instanceof BigDecimal d) {
+            out.write(DECIMAL);
+            writeString(out, d.toString());
+        } else {
+            out.write(TEXT);
+            writeString(out, value.toString());
+        }
+    }
+
+    private static Object readValue(byte[] diff, int[] position) {
+        int type = diff[position[0]++];
+        return switch (type) {
+            case NULL -> null;
+            case STRING, TEXT -> readString(diff, position);
+            case LONG -> unZigZag(readVarint(diff, position));
+            case INTEGER -> (int) unZigZag(readVarint(diff, position));
+            case TRUE -> Boolean.TRUE;
+            case FALSE -> Boolean.FALSE;
+            case DECIMAL -> new BigDecimal(readString(diff, position));
+            default -> throw new IllegalArgumentException("Unknown value type in audit diff: " + type);
+        };
+    }
+
+    private static void writeString(ByteArrayOutputStream out, String value) {
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        writeVarint(out, bytes.length);
+        out.write(bytes, 0, bytes.length);
+    }
+
+    private static String readString(byte[] diff, int[] position) {
+        int length = (int) readVarint(diff, position);
+        String value = new String(diff, position[0], length, StandardCharsets.UTF_8);
+        position[0] += length;
+        return value;
+    }
+
+    private static void writeVarint(ByteArrayOutputStream out, long value) {
+        while ((value & ~0x7FL) != 0) {
+            out.write((int) ((value & 0x7F) | 0x80));
+            value >>>= 7;
+        }
+        out.write((int) value);
+    }
+
+    private static long readVarint(byte[] diff, int[] position) {
+        long value = 0;
+        int shift = 0;
+        byte b;
+        do {
+            b = diff[position[0]++];
+            value |= (long) (b & 0x7F) << shift;
+            shift += 7;
+        } while ((b & 0x80) != 0);
+        return value;
+    }
+
+    private static long zigZag(long value) {
+        return (value << 1) ^ (value >> 63);
+    }
+
+    private static long unZigZag(long value) {
+        return (value >>> 1) ^ -(value & 1);
+    }
+}
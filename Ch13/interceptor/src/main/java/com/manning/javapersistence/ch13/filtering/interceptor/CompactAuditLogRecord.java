@@ -0,0 +1,99 @@
+/*
+ * ========================================================================
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * ========================================================================
+ */
+package com.manning.javapersistence.ch13.filtering.interceptor;
+
+import com.manning.javapersistence.ch13.Constants;
+
+import javax.persistence.*;
+import javax.validation.constraints.NotNull;
+import java.time.LocalDateTime;
+
+/**
+ * Compact alternative to {@link AuditLogRecord}: the message and the entity class are
+ * keys of the {@link AuditMessage} and {@link AuditEntityClass} dictionary tables, and
+ * the changed property values are stored as an {@link AuditDiff}.
+ */
+@Entity
+public class CompactAuditLogRecord {
+
+    @Id
+    @GeneratedValue(generator = Constants.ID_GENERATOR)
+    private Long id;
+
+    private int messageId;
+
+    private int entityClassId;
+
+    @NotNull
+    private Long entityId;
+
+    @NotNull
+    private Long userId;
+
+    @NotNull
+    private LocalDateTime createdOn = LocalDateTime.now();
+
+    @Column(length = 4096)
+    private byte[] diff;
+
+    public CompactAuditLogRecord() {
+    }
+
+    public CompactAuditLogRecord(int messageId,
+                                 int entityClassId,
+                                 Long entityId,
+                                 Long userId,
+                                 byte[] diff) {
+        this.messageId = messageId;
+        this.entityClassId = entityClassId;
+        this.entityId = entityId;
+        this.userId = userId;
+        this.diff = diff;
+    }
+
+    public Long getId() {
+        return id;
+    }
+
+    public int getMessageId() {
+        return messageId;
+    }
+
+    public int getEntityClassId() {
+        return entityClassId;
+    }
+
+    public Long getEntityId() {
+        return entityId;
+    }
+
+    public Long getUserId() {
+        return userId;
+    }
+
+    public LocalDateTime getCreatedOn() {
+        return createdOn;
+    }
+
+    public byte[] getDiff() {
+        return diff;
+    }
+}
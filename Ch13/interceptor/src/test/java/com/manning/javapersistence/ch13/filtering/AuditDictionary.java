@@ -0,0 +1,96 @@
+/*
+ * ========================================================================
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * ========================================================================
+ */
+package com.manning.javapersistence.ch13.filtering;
+
+import com.manning.javapersistence.ch13.filtering.interceptor.AuditEntityClass;
+import com.manning.javapersistence.ch13.filtering.interceptor.AuditMessage;
+import org.hibernate.Session;
+import org.hibernate.SessionFactory;
+import org.hibernate.exception.ConstraintViolationException;
+
+import javax.persistence.PersistenceException;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Function;
+
+/**
+ * Caches the integer keys of the <code>AuditEntityClass</code> and <code>AuditMessage</code>
+ * dictionary rows. A missing row is inserted in its own short transaction, so it never
+ * depends on the outcome of the audited transaction. If another session inserts the same
+ * row first, the unique constraint rejects the insert and the other row's key is used.
+ */
+public class AuditDictionary {
+
+    private final SessionFactory sessionFactory;
+    private final Map<String, Integer> entityClassIds = new ConcurrentHashMap<>();
+    private final Map<String, Integer> messageIds = new ConcurrentHashMap<>();
+
+    public AuditDictionary(SessionFactory sessionFactory) {
+        this.sessionFactory = sessionFactory;
+    }
+
+    public int entityClassId(Class<?> entityClass) {
+        return entityClassIds.computeIfAbsent(entityClass.getName(), name -> resolve(
+                "select d.id from AuditEntityClass d where d.name = :value", name, AuditEntityClass::new));
+    }
+
+    public int messageId(String template) {
+        return messageIds.computeIfAbsent(template, name -> resolve(
+                "select d.id from AuditMessage d where d.template = :value", name, AuditMessage::new));
+    }
+
+    private Integer resolve(String query, String value, Function<String, Object> newEntry) {
+        Integer id = select(query, value);
+        if (id != null) {
+            return id;
+        }
+        try (Session session = sessionFactory.openSession()) {
+            session.beginTransaction();
+            try {
+                Object entry = newEntry.apply(value);
+                session.persist(entry);
+                session.getTransaction().commit();
+                return (Integer) session.getIdentifier(entry);
+            } catch (PersistenceException e) {
+                if (!(e.getCause() instanceof ConstraintViolationException)) {
+                    throw e;
+                }
+                // Inserted concurrently by another session
+                if (session.getTransaction().isActive()) {
+                    session.getTransaction().rollback();
+                }
+            }
+        }
+        id = select(query, value);
+        if (id == null) {
+            throw new IllegalStateException("Audit dictionary entry not found after constraint violation: " + value);
+        }
+        return id;
+    }
+
+    private Integer select(String query, String value) {
+        try (Session session = sessionFactory.openSession()) {
+            return session.createQuery(query, Integer.class)
+                    .setParameter("value", value)
+                    .uniqueResult();
+        }
+    }
+}
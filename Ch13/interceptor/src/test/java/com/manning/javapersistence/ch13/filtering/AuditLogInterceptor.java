@@ -20,16 +20,24 @@
  */
 package com.manning.javapersistence.ch13.filtering;
 
+import com.manning.javapersistence.ch13.filtering.interceptor.AuditDiff;
 import com.manning.javapersistence.ch13.filtering.interceptor.AuditLogRecord;
 import com.manning.javapersistence.ch13.filtering.interceptor.Auditable;
+import com.manning.javapersistence.ch13.filtering.interceptor.CompactAuditLogRecord;
 import org.hibernate.CallbackException;
 import org.hibernate.EmptyInterceptor;
 import org.hibernate.Session;
+import org.hibernate.Transaction;
+import org.hibernate.resource.transaction.spi.TransactionStatus;
 import org.hibernate.type.Type;
 
 import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
 import java.util.Set;
 
 public class AuditLogInterceptor extends EmptyInterceptor {
@@ -46,6 +54,22 @@ public class AuditLogInterceptor extends EmptyInterceptor {
     private Set<Auditable> inserts = new HashSet<>();
     private Set<Auditable> updates = new HashSet<>();
 
+    /* 
+       In pipeline mode, <code>postFlush()</code> only snapshots the audit log records
+       of the flushed changes. They are handed to the <code>AuditLogPipeline</code>
+       once the transaction has committed and are written by its background thread.
+     */
+    private final AuditLogPipeline pipeline;
+    private final List<AuditLogPipeline.Entry> committing = new ArrayList<>();
+
+    public AuditLogInterceptor() {
+        this(null);
+    }
+
+    public AuditLogInterceptor(AuditLogPipeline pipeline) {
+        this.pipeline = pipeline;
+    }
+
     public void setCurrentSession(Session session) {
         this.currentSession = session;
     }
@@ -54,6 +78,18 @@ public class AuditLogInterceptor extends EmptyInterceptor {
         this.currentUserId = currentUserId;
     }
 
+    /* 
+       With a dictionary, the interceptor writes <code>CompactAuditLogRecord</code>s:
+       the message and entity class become dictionary keys, and the changed
+       properties are kept as a binary diff of the entity state.
+     */
+    private AuditDictionary dictionary;
+    private Map<Auditable, byte[]> diffs = new HashMap<>();
+
+    public void setDictionary(AuditDictionary dictionary) {
+        this.dictionary = dictionary;
+    }
+
     /* 
        This method is called when an entity instance is made persistent.
      */
@@ -64,6 +100,9 @@ public class AuditLogInterceptor extends EmptyInterceptor {
 
         if (entity instanceof Auditable aud) {
             inserts.add(aud);
+            if (dictionary != null) {
+                diffs.put(aud, AuditDiff.encode(propertyNames, null, state));
+            }
         }
 
         return false; // We didn't modify the state
@@ -81,6 +120,9 @@ public class AuditLogInterceptor extends EmptyInterceptor {
 
         if (entity instanceof Auditable aud) {
             updates.add(aud);
+            if (dictionary != null) {
+                diffs.put(aud, AuditDiff.encode(propertyNames, previousState, currentState));
+            }
         }
 
         return false; // We didn't modify the currentState
@@ -94,6 +136,11 @@ public class AuditLogInterceptor extends EmptyInterceptor {
     @Override
     public void postFlush(@SuppressWarnings("rawtypes") Iterator iterator) throws CallbackException {
 
+        if (pipeline != null) {
+            snapshot();
+            return;
+        }
+
         /* 
            You are not allowed to access the original persistence context, the
            <code>Session</code> that is currently executing this interceptor.
@@ -116,12 +163,12 @@ public class AuditLogInterceptor extends EmptyInterceptor {
              */
             for (Auditable entity : inserts) {
                 tempSession.persist(
-                        new AuditLogRecord("insert", entity, currentUserId)
+                        record("insert", entity)
                 );
             }
             for (Auditable entity : updates) {
                 tempSession.persist(
-                        new AuditLogRecord("update", entity, currentUserId)
+                        record("update", entity)
                 );
             }
 
@@ -134,6 +181,50 @@ public class AuditLogInterceptor extends EmptyInterceptor {
             tempSession.close();
             inserts.clear();
             updates.clear();
+            diffs.clear();
+        }
+    }
+
+    private Object record(String message, Auditable entity) {
+        if (dictionary == null) {
+            return new AuditLogRecord(message, entity, currentUserId);
+        }
+        return new CompactAuditLogRecord(dictionary.messageId(message),
+                dictionary.entityClassId(entity.getClass()),
+                entity.getId(), currentUserId, diffs.get(entity));
+    }
+
+    private void snapshot() {
+        for (Auditable entity : inserts) {
+            committing.add(pipeline.snapshot(entity, record("insert", entity)));
+        }
+        for (Auditable entity : updates) {
+            committing.add(pipeline.snapshot(entity, record("update", entity)));
+        }
+        inserts.clear();
+        updates.clear();
+        diffs.clear();
+    }
+
+    /* 
+       Records snapshotted by a rolled back transaction are discarded, so they
+       no longer hold back later records of the same entities.
+     */
+    @Override
+    public void afterTransactionCompletion(Transaction tx) {
+        if (pipeline != null) {
+            try {
+                if (tx.getStatus() == TransactionStatus.COMMITTED) {
+                    pipeline.publish(committing);
+                } else {
+                    pipeline.discard(committing);
+                }
+            } finally {
+                committing.clear();
+                inserts.clear();
+                updates.clear();
+                diffs.clear();
+            }
         }
     }
 }
@@ -0,0 +1,314 @@
+/*
+ * ========================================================================
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * ========================================================================
+ */
+package com.manning.javapersistence.ch13.filtering;
+
+import com.manning.javapersistence.ch13.filtering.interceptor.Auditable;
+import org.hibernate.Session;
+import org.hibernate.SessionFactory;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableSet;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * Writes audit log records off the request path. Interceptors publish the records of
+ * committed transactions into a bounded ring buffer; a single writer thread persists
+ * them in JDBC batches. The records of one entity are written in the order of their
+ * flush time sequence, even if the transactions published them in a different order.
+ */
+public class AuditLogPipeline implements AutoCloseable {
+
+    private final SessionFactory sessionFactory;
+    private final BlockingQueue<Entry> ring;
+    private final int batchSize;
+    private final long flushIntervalNanos;
+    private final Thread writer;
+    private final LongAdder written = new LongAdder();
+    private final LongAdder failed = new LongAdder();
+    private final LongAdder batches = new LongAdder();
+    // producers publish under the read lock, close() stops them under the write lock
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+    private volatile boolean running = true;
+
+    /*
+       The sequence numbers of the snapshotted records that are neither written nor
+       discarded yet, by entity. Guarded by itself; also guards the sequence counter.
+     */
+    private final Map<String, NavigableSet<Long>> pending = new HashMap<>();
+    private long sequence;
+
+    // published records waiting for an earlier record of the same entity, writer thread only
+    private final List<Entry> held = new ArrayList<>();
+
+    public AuditLogPipeline(SessionFactory sessionFactory, int capacity, int batchSize,
+                            long flushIntervalMillis) {
+        if (capacity <= 0) {
+            throw new IllegalArgumentException("capacity must be positive: " + capacity);
+        }
+        if (batchSize <= 0) {
+            throw new IllegalArgumentException("batchSize must be positive: " + batchSize);
+        }
+        if (flushIntervalMillis <= 0) {
+            throw new IllegalArgumentException("flushIntervalMillis must be positive: " + flushIntervalMillis);
+        }
+        this.sessionFactory = sessionFactory;
+        this.ring = new ArrayBlockingQueue<>(capacity);
+        this.batchSize = batchSize;
+        this.flushIntervalNanos = TimeUnit.MILLISECONDS.toNanos(flushIntervalMillis);
+        this.writer = new Thread(this::run, "audit-log-writer");
+        this.writer.setDaemon(true);
+        this.writer.start();
+    }
+
+    /*
+       Called at flush time, while the row locks of the flushed changes are held, so two
+       transactions changing the same entity get their sequence numbers in commit order.
+       They may publish after the commit in a different order; the writer then holds back
+       a record until every record of that entity with a lower sequence number has been
+       written or discarded.
+     */
+    Entry snapshot(Auditable entity, Object record) {
+        String entityKey = entity.getClass().getName() + "#" + entity.getId();
+        synchronized (pending) {
+            Entry entry = new Entry(++sequence, entityKey, record);
+            pending.computeIfAbsent(entityKey, key -> new TreeSet<>()).add(entry.sequence);
+            return entry;
+        }
+    }
+
+    void publish(List<Entry> entries) {
+        lock.readLock().lock();
+        try {
+            if (!running) {
+                discard(entries);
+                throw new IllegalStateException("Audit log pipeline is closed");
+            }
+            for (Entry entry : entries) {
+                ring.put(entry);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while publishing audit log records", e);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /*
+       Records of a rolled back transaction, or records that could not be published,
+       no longer hold back later records of their entities.
+     */
+    void discard(List<Entry> entries) {
+        synchronized (pending) {
+            entries.forEach(this::release);
+        }
+    }
+
+    /**
+     * Waits until every record published before this call has been written.
+     */
+    public void flush() {
+        Entry marker;
+        synchronized (pending) {
+            marker = new Entry(++sequence, null, null);
+        }
+        publish(List.of(marker));
+        marker.written.join();
+    }
+
+    private void run() {
+        List<Entry> batch = new ArrayList<>(batchSize);
+        while (running || !ring.isEmpty()) {
+            try {
+                Entry first = ring.poll(flushIntervalNanos, TimeUnit.NANOSECONDS);
+                if (first != null) {
+                    batch.add(first);
+                    long deadline = System.nanoTime() + flushIntervalNanos;
+                    while (batch.size() < batchSize && first.record != null) {
+                        ring.drainTo(batch, batchSize - batch.size());
+                        long remaining = deadline - System.nanoTime();
+                        if (batch.size() >= batchSize || remaining <= 0) {
+                            break;
+                        }
+                        Entry next = ring.poll(remaining, TimeUnit.NANOSECONDS);
+                        if (next == null) {
+                            break;
+                        }
+                        batch.add(next);
+                    }
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                running = false;
+            }
+            if (!batch.isEmpty() || !held.isEmpty()) {
+                List<Entry> ready = ready(batch);
+                if (!ready.isEmpty()) {
+                    writeBatch(ready);
+                }
+                batch.clear();
+            }
+        }
+    }
+
+    /*
+       Returns the held and newly polled entries that can be written now, in sequence
+       order, and keeps the others held. A record is ready when every lower pending
+       sequence number of its entity is ready as well; a flush marker is ready when no
+       record with a lower sequence number is held.
+     */
+    private List<Entry> ready(List<Entry> batch) {
+        List<Entry> candidates = new ArrayList<>(held);
+        candidates.addAll(batch);
+        candidates.sort(Comparator.comparingLong(entry -> entry.sequence));
+        held.clear();
+
+        List<Entry> ready = new ArrayList<>(candidates.size());
+        Set<Long> readySequences = new HashSet<>();
+        synchronized (pending) {
+            for (Entry entry : candidates) {
+                boolean isReady;
+                if (entry.record == null) {
+                    isReady = held.isEmpty();
+                } else {
+                    NavigableSet<Long> sequences = pending.get(entry.entityKey);
+                    isReady = sequences == null
+                            || readySequences.containsAll(sequences.headSet(entry.sequence, false));
+                }
+                if (isReady) {
+                    ready.add(entry);
+                    readySequences.add(entry.sequence);
+                } else {
+                    held.add(entry);
+                }
+            }
+        }
+        return ready;
+    }
+
+    private void writeBatch(List<Entry> batch) {
+        long records = batch.stream().filter(entry -> entry.record != null).count();
+        try (Session session = sessionFactory.openSession()) {
+            session.setJdbcBatchSize(batchSize);
+            session.beginTransaction();
+            try {
+                for (Entry entry : batch) {
+                    if (entry.record != null) {
+                        session.persist(entry.record);
+                    }
+                }
+                session.getTransaction().commit();
+            } catch (RuntimeException e) {
+                if (session.getTransaction().isActive()) {
+                    session.getTransaction().rollback();
+                }
+                throw e;
+            }
+            written.add(records);
+            batches.increment();
+            discard(batch);
+            batch.forEach(entry -> entry.written.complete(null));
+        } catch (RuntimeException e) {
+            failed.add(records);
+            discard(batch);
+            batch.forEach(entry -> entry.written.completeExceptionally(e));
+        }
+    }
+
+    private void release(Entry entry) {
+        if (entry.entityKey != null) {
+            NavigableSet<Long> sequences = pending.get(entry.entityKey);
+            if (sequences != null && sequences.remove(entry.sequence) && sequences.isEmpty()) {
+                pending.remove(entry.entityKey);
+            }
+        }
+    }
+
+    @Override
+    public void close() {
+        lock.writeLock().lock();
+        try {
+            running = false;
+        } finally {
+            lock.writeLock().unlock();
+        }
+        // nothing can be published anymore, the writer drains the ring before stopping
+        try {
+            writer.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return;
+        }
+        /*
+           Left over if the writer thread was interrupted, or if records were still held
+           back for a transaction that had not published yet.
+         */
+        List<Entry> leftOver = new ArrayList<>(held);
+        held.clear();
+        ring.drainTo(leftOver);
+        discard(leftOver);
+        IllegalStateException closed = new IllegalStateException("Audit log pipeline is closed");
+        for (Entry entry : leftOver) {
+            if (entry.record != null) {
+                failed.increment();
+            }
+            entry.written.completeExceptionally(closed);
+        }
+    }
+
+    public long getWritten() {
+        return written.sum();
+    }
+
+    public long getFailed() {
+        return failed.sum();
+    }
+
+    public long getBatches() {
+        return batches.sum();
+    }
+
+    static final class Entry {
+        private final long sequence;
+        private final String entityKey;
+        private final Object record;
+        private final CompletableFuture<Void> written = new CompletableFuture<>();
+
+        private Entry(long sequence, String entityKey, Object record) {
+            this.sequence = sequence;
+            this.entityKey = entityKey;
+            this.record = record;
+        }
+    }
+}
@@ -20,7 +20,11 @@
  */
 package com.manning.javapersistence.ch13.filtering;
 
+import com.manning.javapersistence.ch13.filtering.interceptor.AuditDiff;
+import com.manning.javapersistence.ch13.filtering.interceptor.AuditEntityClass;
 import com.manning.javapersistence.ch13.filtering.interceptor.AuditLogRecord;
+import com.manning.javapersistence.ch13.filtering.interceptor.AuditMessage;
+import com.manning.javapersistence.ch13.filtering.interceptor.CompactAuditLogRecord;
 import com.manning.javapersistence.ch13.filtering.interceptor.Item;
 import com.manning.javapersistence.ch13.filtering.interceptor.User;
 import org.hibernate.Session;
@@ -31,9 +35,16 @@ import org.junit.jupiter.api.Test;
 import javax.persistence.EntityManager;
 import javax.persistence.EntityManagerFactory;
 import javax.persistence.Persistence;
+import java.util.ArrayList;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
 
 public class AuditLogging {
 
@@ -104,4 +115,207 @@ public class AuditLogging {
 
     }
 
+    @Test
+    public void writeAuditLogThroughPipeline() {
+        Long CURRENT_USER_ID;
+        {
+            EntityManager em = emf.createEntityManager();
+            em.getTransaction().begin();
+            User currentUser = new User("johndoe");
+            em.persist(currentUser);
+            em.getTransaction().commit();
+            em.close();
+            CURRENT_USER_ID = currentUser.getId();
+        }
+
+        SessionFactory sessionFactory = emf.unwrap(SessionFactory.class);
+
+        try (AuditLogPipeline pipeline = new AuditLogPipeline(sessionFactory, 1_000, 50, 20)) {
+            AuditLogInterceptor interceptor = new AuditLogInterceptor(pipeline);
+            interceptor.setCurrentUserId(CURRENT_USER_ID);
+            Session session = sessionFactory.withOptions().interceptor(interceptor).openSession();
+
+            session.beginTransaction();
+            Item item = new Item("Foo");
+            session.persist(item);
+            for (int i = 0; i < 99; i++) {
+                session.persist(new Item("Item " + i));
+            }
+            session.getTransaction().commit();
+
+            for (String name : List.of("Bar", "Baz")) {
+                session.beginTransaction();
+                item.setName(name);
+                session.getTransaction().commit();
+            }
+
+            // the records of a rolled back transaction are never published
+            session.beginTransaction();
+            item.setName("Rolled back");
+            session.flush();
+            session.getTransaction().rollback();
+            session.close();
+
+            pipeline.flush();
+
+            EntityManager em = emf.createEntityManager();
+            em.getTransaction().begin();
+            List<AuditLogRecord> logs = em.createQuery(
+                    "select lr from AuditLogRecord lr where lr.entityId = :id order by lr.id",
+                    AuditLogRecord.class
+            ).setParameter("id", item.getId()).getResultList();
+            assertEquals(3, logs.size());
+            assertEquals("insert", logs.get(0).getMessage());
+            assertEquals("update", logs.get(1).getMessage());
+            assertEquals("update", logs.get(2).getMessage());
+            assertEquals(CURRENT_USER_ID, logs.get(0).getUserId());
+            assertEquals(102L, em.createQuery("select count(lr) from AuditLogRecord lr").getSingleResult());
+            em.getTransaction().commit();
+            em.close();
+
+            assertEquals(102, pipeline.getWritten());
+            assertEquals(0, pipeline.getFailed());
+            assertTrue(pipeline.getBatches() >= 2);
+        }
+    }
+
+    @Test
+    public void writeAuditLogInEntityOrder() {
+        Item item = new Item("Foo");
+        Item other = new Item("Other");
+        {
+            EntityManager em = emf.createEntityManager();
+            em.getTransaction().begin();
+            em.persist(item);
+            em.persist(other);
+            em.getTransaction().commit();
+            em.close();
+        }
+
+        SessionFactory sessionFactory = emf.unwrap(SessionFactory.class);
+
+        AuditLogPipeline pipeline = new AuditLogPipeline(sessionFactory, 1_000, 50, 20);
+        try (pipeline) {
+            AuditLogPipeline.Entry first = pipeline.snapshot(item, new AuditLogRecord("first", item, null));
+            AuditLogPipeline.Entry second = pipeline.snapshot(item, new AuditLogRecord("second", item, null));
+            AuditLogPipeline.Entry rolledBack = pipeline.snapshot(item, new AuditLogRecord("rolled back", item, null));
+            AuditLogPipeline.Entry third = pipeline.snapshot(item, new AuditLogRecord("third", item, null));
+
+            // the second transaction publishes first, the writer holds its record back
+            pipeline.publish(List.of(second));
+            pipeline.publish(List.of(pipeline.snapshot(other, new AuditLogRecord("other", other, null))));
+            while (pipeline.getWritten() < 1) {
+                Thread.onSpinWait();
+            }
+            assertEquals(0, messages(item).size());
+
+            pipeline.publish(List.of(first));
+            pipeline.publish(List.of(third));
+            pipeline.discard(List.of(rolledBack));
+            pipeline.flush();
+
+            assertEquals(List.of("first", "second", "third"), messages(item));
+            assertEquals(4, pipeline.getWritten());
+        }
+
+        assertThrows(IllegalStateException.class,
+                () -> pipeline.publish(List.of(pipeline.snapshot(item, new AuditLogRecord("closed", item, null)))));
+    }
+
+    private List<String> messages(Item item) {
+        EntityManager em = emf.createEntityManager();
+        em.getTransaction().begin();
+        List<String> messages = em.createQuery(
+                "select lr.message from AuditLogRecord lr where lr.entityId = :id order by lr.id",
+                String.class
+        ).setParameter("id", item.getId()).getResultList();
+        em.getTransaction().commit();
+        em.close();
+        return messages;
+    }
+
+    @Test
+    public void writeCompactAuditLog() {
+        Long CURRENT_USER_ID;
+        {
+            EntityManager em = emf.createEntityManager();
+            em.getTransaction().begin();
+            User currentUser = new User("johndoe");
+            em.persist(currentUser);
+            em.getTransaction().commit();
+            em.close();
+            CURRENT_USER_ID = currentUser.getId();
+        }
+
+        SessionFactory sessionFactory = emf.unwrap(SessionFactory.class);
+        AuditDictionary dictionary = new AuditDictionary(sessionFactory);
+
+        Session session = sessionFactory.withOptions().interceptor(new AuditLogInterceptor()).openSession();
+        AuditLogInterceptor interceptor =
+                (AuditLogInterceptor) ((SessionImplementor) session).getInterceptor();
+        interceptor.setCurrentSession(session);
+        interceptor.setCurrentUserId(CURRENT_USER_ID);
+        interceptor.setDictionary(dictionary);
+
+        session.beginTransaction();
+        Item item = new Item("Foo");
+        session.persist(item);
+        session.getTransaction().commit();
+
+        session.beginTransaction();
+        item.setName("Bar");
+        session.getTransaction().commit();
+        session.close();
+
+        EntityManager em = emf.createEntityManager();
+        em.getTransaction().begin();
+        List<CompactAuditLogRecord> logs = em.createQuery(
+                "select lr from CompactAuditLogRecord lr order by lr.id",
+                CompactAuditLogRecord.class
+        ).getResultList();
+        assertEquals(2, logs.size());
+        assertEquals(dictionary.messageId("insert"), logs.get(0).getMessageId());
+        assertEquals(dictionary.messageId("update"), logs.get(1).getMessageId());
+        assertEquals(dictionary.entityClassId(Item.class), logs.get(1).getEntityClassId());
+        assertEquals(item.getId(), logs.get(1).getEntityId());
+        assertEquals(CURRENT_USER_ID, logs.get(1).getUserId());
+        assertEquals(Map.of("name", "Foo"), AuditDiff.decode(logs.get(0).getDiff()));
+        assertEquals(Map.of("name", "Bar"), AuditDiff.decode(logs.get(1).getDiff()));
+        // length and "name", type tag, length and "Bar"
+        assertEquals(10, logs.get(1).getDiff().length);
+
+        assertEquals(Item.class.getName(), em.find(AuditEntityClass.class,
+                logs.get(1).getEntityClassId()).getName());
+        assertEquals("update", em.find(AuditMessage.class, logs.get(1).getMessageId()).getTemplate());
+        assertEquals(2L, em.createQuery("select count(m) from AuditMessage m").getSingleResult());
+        em.getTransaction().commit();
+        em.close();
+    }
+
+    @Test
+    public void resolveDictionaryConcurrently() throws Exception {
+        SessionFactory sessionFactory = emf.unwrap(SessionFactory.class);
+        // Two dictionaries don't share their caches, like on two application nodes
+        List<AuditDictionary> dictionaries = List.of(
+                new AuditDictionary(sessionFactory), new AuditDictionary(sessionFactory));
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        try {
+            List<Future<Integer>> ids = new ArrayList<>();
+            for (int i = 0; i < 8; i++) {
+                AuditDictionary dictionary = dictionaries.get(i % 2);
+                ids.add(executor.submit(() -> dictionary.messageId("concurrent")));
+            }
+            for (Future<Integer> id : ids) {
+                assertEquals(ids.get(0).get(), id.get());
+            }
+        } finally {
+            executor.shutdown();
+        }
+
+        EntityManager em = emf.createEntityManager();
+        assertEquals(1L, em.createQuery("select count(m) from AuditMessage m where m.template = 'concurrent'")
+                .getSingleResult());
+        em.close();
+    }
+
 }
@@ -0,0 +1,170 @@
+/*
+ * ========================================================================
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * ========================================================================
+ */
+package com.manning.javapersistence.ch13.filtering;
+
+import com.manning.javapersistence.ch13.filtering.SecurityLoadListener.MySecurity;
+import org.hibernate.Session;
+
+import java.io.Serializable;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.WeakHashMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.LongSupplier;
+
+/**
+ * Caches the decisions of <code>MySecurity</code> per (principal, entity name, id).
+ * A decision is first looked up in the cache of the loading session, then in a
+ * cache shared by all sessions whose entries expire after a time to live. Expired
+ * entries are purged while adding new ones, at most once per time to live, so the
+ * shared cache holds the decisions of about the last two time to live periods.
+ */
+public class AuthorizationCache {
+
+    private record Key(String principal, String entityName, Serializable entityId) {
+    }
+
+    private record Decision(boolean authorized, long expiresAt) {
+    }
+
+    private final long ttlNanos;
+    private final LongSupplier clock;
+    private final Map<Key, Decision> shared = new ConcurrentHashMap<>();
+    private final Map<Object, Map<Key, Boolean>> sessions =
+            Collections.synchronizedMap(new WeakHashMap<>());
+    private final LongAdder evaluations = new LongAdder();
+    private final LongAdder batchEvaluations = new LongAdder();
+    private final AtomicLong nextPurgeAt;
+
+    public AuthorizationCache(Duration ttl) {
+        this(ttl, System::nanoTime);
+    }
+
+    AuthorizationCache(Duration ttl, LongSupplier clock) {
+        if (ttl.isNegative() || ttl.isZero()) {
+            throw new IllegalArgumentException("ttl must be positive: " + ttl);
+        }
+        this.ttlNanos = ttl.toNanos();
+        this.clock = clock;
+        this.nextPurgeAt = new AtomicLong(clock.getAsLong() + ttlNanos);
+    }
+
+    public boolean isAuthorized(Object session, String entityName, Serializable entityId) {
+        Key key = new Key(MySecurity.getCurrentPrincipal(), entityName, entityId);
+        Map<Key, Boolean> sessionDecisions = sessionDecisions(session);
+        Boolean authorized = sessionDecisions.get(key);
+        if (authorized == null) {
+            Decision decision = shared.get(key);
+            long now = clock.getAsLong();
+            if (decision == null || decision.expiresAt() - now <= 0) {
+                evaluations.increment();
+                decision = new Decision(MySecurity.isAuthorized(entityName, entityId), now + ttlNanos);
+                share(key, decision, now);
+            }
+            authorized = decision.authorized();
+            sessionDecisions.put(key, authorized);
+        }
+        return authorized;
+    }
+
+    /**
+     * Evaluates the policy once for all instances about to be loaded, for example
+     * the elements of a collection, instead of once per instance in <code>onLoad()</code>.
+     */
+    public void preAuthorize(Session session, Class<?> entityClass,
+                             Collection<? extends Serializable> entityIds) {
+        String principal = MySecurity.getCurrentPrincipal();
+        String entityName = entityClass.getName();
+        Map<Key, Boolean> sessionDecisions = sessionDecisions(session);
+        long now = clock.getAsLong();
+        List<Serializable> missing = new ArrayList<>();
+        for (Serializable id : entityIds) {
+            Key key = new Key(principal, entityName, id);
+            Decision decision = shared.get(key);
+            if (decision == null || decision.expiresAt() - now <= 0) {
+                missing.add(id);
+            } else {
+                sessionDecisions.put(key, decision.authorized());
+            }
+        }
+        if (missing.isEmpty()) {
+            return;
+        }
+        batchEvaluations.increment();
+        Set<Serializable> authorized = MySecurity.authorizeAll(principal, entityName, missing);
+        for (Serializable id : missing) {
+            Key key = new Key(principal, entityName, id);
+            boolean decision = authorized.contains(id);
+            share(key, new Decision(decision, now + ttlNanos), now);
+            sessionDecisions.put(key, decision);
+        }
+    }
+
+    /*
+       Invalidation hooks for changes of the security policy. Sessions already open
+       keep the decisions they made, like they keep the instances they loaded.
+     */
+    public void invalidate(Class<?> entityClass, Serializable entityId) {
+        String entityName = entityClass.getName();
+        shared.keySet().removeIf(key -> key.entityName().equals(entityName) && key.entityId().equals(entityId));
+    }
+
+    public void invalidatePrincipal(String principal) {
+        shared.keySet().removeIf(key -> key.principal().equals(principal));
+    }
+
+    public void invalidateAll() {
+        shared.clear();
+    }
+
+    public long getEvaluations() {
+        return evaluations.sum();
+    }
+
+    public long getBatchEvaluations() {
+        return batchEvaluations.sum();
+    }
+
+    int getSharedSize() {
+        return shared.size();
+    }
+
+    private void share(Key key, Decision decision, long now) {
+        long purgeAt = nextPurgeAt.get();
+        // one thread purges, the others go on
+        if (now - purgeAt >= 0 && nextPurgeAt.compareAndSet(purgeAt, now + ttlNanos)) {
+            shared.values().removeIf(expired -> expired.expiresAt() - now <= 0);
+        }
+        shared.put(key, decision);
+    }
+
+    private Map<Key, Boolean> sessionDecisions(Object session) {
+        return sessions.computeIfAbsent(session, s -> new HashMap<>());
+    }
+}
@@ -0,0 +1,154 @@
+/*
+ * ========================================================================
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * ========================================================================
+ */
+package com.manning.javapersistence.ch13.filtering;
+
+import com.manning.javapersistence.ch13.filtering.interceptor.Item;
+import org.hibernate.Session;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import javax.persistence.EntityManager;
+import javax.persistence.EntityManagerFactory;
+import javax.persistence.Persistence;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+public class AuthorizationCaching {
+
+    private EntityManagerFactory emf =
+            Persistence.createEntityManagerFactory("ch13");
+
+    @AfterEach
+    public void removeCache() {
+        SecurityLoadListener.setAuthorizationCache(null);
+        emf.close();
+    }
+
+    private List<Long> storeItems(int count) {
+        EntityManager em = emf.createEntityManager();
+        em.getTransaction().begin();
+        List<Long> ids = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            Item item = new Item("Item " + i);
+            em.persist(item);
+            ids.add(item.getId());
+        }
+        em.getTransaction().commit();
+        em.close();
+        return ids;
+    }
+
+    @Test
+    public void preAuthorizeLoads() {
+        List<Long> ids = storeItems(1_000);
+        AuthorizationCache cache = new AuthorizationCache(Duration.ofMinutes(5));
+        SecurityLoadListener.setAuthorizationCache(cache);
+
+        EntityManager em = emf.createEntityManager();
+        em.getTransaction().begin();
+        cache.preAuthorize(em.unwrap(Session.class), Item.class, ids);
+        for (Long id : ids) {
+            em.find(Item.class, id);
+        }
+        // loads served from the persistence context are checked against the session cache
+        for (Long id : ids) {
+            em.find(Item.class, id);
+        }
+        em.getTransaction().commit();
+        em.close();
+
+        assertEquals(1, cache.getBatchEvaluations());
+        assertEquals(0, cache.getEvaluations());
+
+        // another session reuses the shared decisions
+        em = emf.createEntityManager();
+        em.getTransaction().begin();
+        cache.preAuthorize(em.unwrap(Session.class), Item.class, ids);
+        em.find(Item.class, ids.get(0));
+        em.getTransaction().commit();
+        em.close();
+
+        assertEquals(1, cache.getBatchEvaluations());
+        assertEquals(0, cache.getEvaluations());
+    }
+
+    @Test
+    public void expireAndInvalidate() {
+        List<Long> ids = storeItems(2);
+        AtomicLong now = new AtomicLong();
+        AuthorizationCache cache = new AuthorizationCache(Duration.ofSeconds(10), now::get);
+        SecurityLoadListener.setAuthorizationCache(cache);
+
+        findInNewSession(ids.get(0));
+        findInNewSession(ids.get(0));
+        assertEquals(1, cache.getEvaluations());
+
+        // a different principal gets its own decision
+        SecurityLoadListener.MySecurity.setCurrentPrincipal("johndoe");
+        try {
+            findInNewSession(ids.get(0));
+            assertEquals(2, cache.getEvaluations());
+        } finally {
+            SecurityLoadListener.MySecurity.setCurrentPrincipal("anonymous");
+        }
+
+        cache.invalidate(Item.class, ids.get(0));
+        findInNewSession(ids.get(0));
+        assertEquals(3, cache.getEvaluations());
+
+        now.addAndGet(Duration.ofSeconds(11).toNanos());
+        findInNewSession(ids.get(0));
+        assertEquals(4, cache.getEvaluations());
+
+        findInNewSession(ids.get(1));
+        cache.invalidateAll();
+        findInNewSession(ids.get(1));
+        assertEquals(6, cache.getEvaluations());
+    }
+
+    @Test
+    public void purgeExpiredDecisions() {
+        List<Long> ids = storeItems(3);
+        AtomicLong now = new AtomicLong();
+        AuthorizationCache cache = new AuthorizationCache(Duration.ofSeconds(10), now::get);
+        SecurityLoadListener.setAuthorizationCache(cache);
+
+        ids.forEach(this::findInNewSession);
+        assertEquals(3, cache.getSharedSize());
+
+        // the next new decision purges the expired ones
+        now.addAndGet(Duration.ofSeconds(11).toNanos());
+        findInNewSession(ids.get(0));
+        assertEquals(1, cache.getSharedSize());
+    }
+
+    private void findInNewSession(Long id) {
+        EntityManager em = emf.createEntityManager();
+        em.getTransaction().begin();
+        em.find(Item.class, id);
+        em.getTransaction().commit();
+        em.close();
+    }
+}
@@ -5,15 +5,28 @@ import org.hibernate.event.internal.DefaultLoadEventListener;
 import org.hibernate.event.spi.LoadEvent;
 
 import java.io.Serializable;
+import java.util.Collection;
+import java.util.Set;
+import java.util.stream.Collectors;
 
 public class SecurityLoadListener extends DefaultLoadEventListener {
 
+    private static volatile AuthorizationCache authorizationCache;
+
+    public static void setAuthorizationCache(AuthorizationCache cache) {
+        authorizationCache = cache;
+    }
+
   @Override
     public void onLoad(LoadEvent event, LoadType loadType)
         throws HibernateException {
 
-        boolean authorized =
-            MySecurity.isAuthorized(
+        AuthorizationCache cache = authorizationCache;
+        boolean authorized = cache != null
+            ? cache.isAuthorized(
+                event.getSession(), event.getEntityClassName(), event.getEntityId()
+            )
+            : MySecurity.isAuthorized(
                 event.getEntityClassName(), event.getEntityId()
             );
 
@@ -25,9 +38,28 @@ public class SecurityLoadListener extends DefaultLoadEventListener {
     }
 
     public static class MySecurity {
+        private static final ThreadLocal<String> currentPrincipal =
+            ThreadLocal.withInitial(() -> "anonymous");
+
+        static String getCurrentPrincipal() {
+            return currentPrincipal.get();
+        }
+
+        static void setCurrentPrincipal(String principal) {
+            currentPrincipal.set(principal);
+        }
+
         static boolean isAuthorized(String entityName, Serializable entityId) {
            return true;
         }
+
+        // evaluates the policy once for a whole set of instances
+        static Set<Serializable> authorizeAll(String principal, String entityName,
+                                              Collection<? extends Serializable> entityIds) {
+            return entityIds.stream()
+                .filter(id -> isAuthorized(entityName, id))
+                .collect(Collectors.toSet());
+        }
     }
 
     public static class MySecurityException extends RuntimeException {
@@ -20,18 +20,28 @@
  */
 package com.manning.javapersistence.ch14.dao;
 
+import java.util.Collection;
 import java.util.List;
+import java.util.stream.Stream;
 
 public interface GenericDao<T> {
     T getById(long id);
 
+    List<T> getByIds(Collection<Long> ids);
+
     List<T> getAll();
 
+    Stream<T> streamAll();
+
     void insert(T entity);
 
+    BulkInsertReport insertAll(Iterable<T> entities, int batchSize);
+
     void delete(T entity);
 
     void update(long id, String propertyName, Object propertyValue);
 
     List<T> findByProperty(String propertyName, Object propertyValue);
+
+    Stream<T> streamByProperty(String propertyName, Object propertyValue);
 }
\ No newline at end of file
@@ -37,6 +37,14 @@ public class ItemDaoImpl extends AbstractGenericDao<Item> {
         }
     }
 
+    @Override
+    protected void detach(Item item) {
+        for (Bid bid : item.getBids()) {
+            sessionFactory.getCurrentSession().evict(bid);
+        }
+        sessionFactory.getCurrentSession().evict(item);
+    }
+
     @Override
     public void delete(Item item) {
         sessionFactory.getCurrentSession().createQuery("delete from Bid b where b.item.id = :id").
@@ -51,6 +51,8 @@ public class SpringConfiguration {
         hibernateProperties.setProperty(AvailableSettings.HBM2DDL_AUTO, "create");
         hibernateProperties.setProperty(AvailableSettings.SHOW_SQL, "true");
         hibernateProperties.setProperty(AvailableSettings.DIALECT, "org.hibernate.dialect.MySQL8Dialect");
+        hibernateProperties.setProperty(AvailableSettings.STATEMENT_BATCH_SIZE, "50");
+        hibernateProperties.setProperty(AvailableSettings.ORDER_INSERTS, "true");
 
         return hibernateProperties;
     }
@@ -59,7 +61,7 @@ public class SpringConfiguration {
     public DataSource dataSource() {
         DriverManagerDataSource dataSource = new DriverManagerDataSource();
         dataSource.setDriverClassName("com.mysql.cj.jdbc.Driver");
-        dataSource.setUrl("jdbc:mysql://localhost:3306/CH14_SPRING_HIBERNATE?serverTimezone=UTC");
+        dataSource.setUrl("jdbc:mysql://localhost:3306/CH14_SPRING_HIBERNATE?serverTimezone=UTC&rewriteBatchedStatements=true&useCursorFetch=true");
         dataSource.setUsername("root");
         dataSource.setPassword("");
         return dataSource;
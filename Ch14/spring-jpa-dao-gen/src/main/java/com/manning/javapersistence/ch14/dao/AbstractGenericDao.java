@@ -20,36 +20,112 @@
  */
 package com.manning.javapersistence.ch14.dao;
 
+import org.hibernate.Session;
+import org.hibernate.annotations.QueryHints;
+import org.springframework.beans.factory.InitializingBean;
 import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Propagation;
 import org.springframework.transaction.annotation.Transactional;
 
 import javax.persistence.EntityManager;
+import javax.persistence.EntityManagerFactory;
 import javax.persistence.PersistenceContext;
 import javax.persistence.PersistenceContextType;
+import javax.persistence.TypedQuery;
+import java.util.ArrayList;
+import java.util.Collection;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.stream.Stream;
 
 @Repository
 @Transactional
-public abstract class AbstractGenericDao<T> implements GenericDao<T> {
+public abstract class AbstractGenericDao<T> implements GenericDao<T>, InitializingBean {
 
     @PersistenceContext(type = PersistenceContextType.EXTENDED)
     protected EntityManager em;
 
     private Class<T> clazz;
 
+    private String getByIdQuery;
+
+    private String getAllQuery;
+
+    // property name -> name of the query registered with the factory
+    private final Map<String, String> updateQueries = new ConcurrentHashMap<>();
+
+    private final Map<String, String> findByPropertyQueries = new ConcurrentHashMap<>();
+
+    private int multiLoadBatchSize = 500;
+
+    private int streamFetchSize = 100;
+
+    private int streamDetachInterval = 100;
+
     public void setClazz(Class<T> clazz) {
         this.clazz = clazz;
+        this.getByIdQuery = clazz.getSimpleName() + ".getById";
+        this.getAllQuery = clazz.getSimpleName() + ".getAll";
+        updateQueries.clear();
+        findByPropertyQueries.clear();
+    }
+
+    /*
+       Once the factory is injected, registers the queries of this DAO as named queries;
+       the operations create them by name instead of from JPQL strings.
+     */
+    @Override
+    public void afterPropertiesSet() {
+        addNamedQuery(getByIdQuery, "SELECT e FROM " + clazz.getName() + " e WHERE e.id = :id");
+        addNamedQuery(getAllQuery, "from " + clazz.getName());
+    }
+
+    public void setMultiLoadBatchSize(int multiLoadBatchSize) {
+        if (multiLoadBatchSize < 1) {
+            throw new IllegalArgumentException("multiLoadBatchSize must be positive: " + multiLoadBatchSize);
+        }
+        this.multiLoadBatchSize = multiLoadBatchSize;
+    }
+
+    public void setStreamFetchSize(int streamFetchSize) {
+        if (streamFetchSize < 1) {
+            throw new IllegalArgumentException("streamFetchSize must be positive: " + streamFetchSize);
+        }
+        this.streamFetchSize = streamFetchSize;
+    }
+
+    public void setStreamDetachInterval(int streamDetachInterval) {
+        if (streamDetachInterval < 1) {
+            throw new IllegalArgumentException("streamDetachInterval must be positive: " + streamDetachInterval);
+        }
+        this.streamDetachInterval = streamDetachInterval;
     }
 
     @Override
     public T getById(long id) {
-        return em.createQuery("SELECT e FROM " + clazz.getName() + " e WHERE e.id = :id", clazz)
+        return em.createNamedQuery(getByIdQuery, clazz)
                 .setParameter("id", id).getSingleResult();
     }
 
+    @Override
+    public List<T> getByIds(Collection<Long> ids) {
+        return em.unwrap(Session.class).byMultipleIds(clazz)
+                .withBatchSize(multiLoadBatchSize)
+                .enableSessionCheck(true)
+                .enableOrderedReturn(true)
+                .multiLoad(new ArrayList<>(ids));
+    }
+
     @Override
     public List<T> getAll() {
-        return em.createQuery("from " + clazz.getName(), clazz).getResultList();
+        return em.createNamedQuery(getAllQuery, clazz).getResultList();
+    }
+
+    @Override
+    @Transactional(propagation = Propagation.MANDATORY)
+    public Stream<T> streamAll() {
+        return stream(em.createNamedQuery(getAllQuery, clazz));
     }
 
     @Override
@@ -57,6 +133,54 @@ public abstract class AbstractGenericDao<T> implements GenericDao<T> {
         em.persist(entity);
     }
 
+    /**
+     * Inserts the entities in JDBC batches of <code>batchSize</code> rows. After each
+     * batch is flushed, the entities of that batch are detached, so the persistence
+     * context doesn't grow with the number of rows; changes made to them afterwards
+     * are not persisted. Entities the caller loaded before are still managed.
+     */
+    @Override
+    public BulkInsertReport insertAll(Iterable<T> entities, int batchSize) {
+        if (batchSize < 1) {
+            throw new IllegalArgumentException("batchSize must be positive: " + batchSize);
+        }
+        Session session = em.unwrap(Session.class);
+        Integer previousBatchSize = session.getJdbcBatchSize();
+        session.setJdbcBatchSize(batchSize);
+        List<T> chunk = new ArrayList<>(batchSize);
+        long start = System.nanoTime();
+        long rows = 0;
+        try {
+            for (T entity : entities) {
+                insert(entity);
+                chunk.add(entity);
+                if (++rows % batchSize == 0) {
+                    flushAndDetach(chunk);
+                }
+            }
+            flushAndDetach(chunk);
+        } finally {
+            session.setJdbcBatchSize(previousBatchSize);
+        }
+        return new BulkInsertReport(rows, System.nanoTime() - start);
+    }
+
+    private void flushAndDetach(List<T> chunk) {
+        em.flush();
+        for (T inserted : chunk) {
+            detach(inserted);
+        }
+        chunk.clear();
+    }
+
+    /**
+     * Detaches an entity inserted by <code>insertAll</code>, and everything
+     * <code>insert</code> persisted with it.
+     */
+    protected void detach(T entity) {
+        em.detach(entity);
+    }
+
     @Override
     public void delete(T entity) {
         em.remove(entity);
@@ -64,15 +188,64 @@ public abstract class AbstractGenericDao<T> implements GenericDao<T> {
 
     @Override
     public void update(long id, String propertyName, Object propertyValue) {
-        em.createQuery("UPDATE " + clazz.getName() + " e SET e." + propertyName + " = :propertyValue WHERE e.id = :id")
+        em.createNamedQuery(updateQuery(propertyName))
                 .setParameter("propertyValue", propertyValue)
                 .setParameter("id", id).executeUpdate();
     }
 
     @Override
     public List<T> findByProperty(String propertyName, Object propertyValue) {
-        return em.createQuery("SELECT e FROM " + clazz.getName() + " e WHERE e." + propertyName + " = :propertyValue", clazz)
+        return em.createNamedQuery(findByPropertyQuery(propertyName), clazz)
                 .setParameter("propertyValue", propertyValue).getResultList();
     }
 
+    @Override
+    @Transactional(propagation = Propagation.MANDATORY)
+    public Stream<T> streamByProperty(String propertyName, Object propertyValue) {
+        return stream(em.createNamedQuery(findByPropertyQuery(propertyName), clazz)
+                .setParameter("propertyValue", propertyValue));
+    }
+
+    private Stream<T> stream(TypedQuery<T> query) {
+        List<T> loaded = new ArrayList<>(streamDetachInterval);
+        return query.setHint(QueryHints.FETCH_SIZE, streamFetchSize)
+                .setHint(QueryHints.READ_ONLY, true)
+                .getResultStream()
+                .peek(entity -> {
+                    if (loaded.size() == streamDetachInterval) {
+                        loaded.forEach(em::detach);
+                        loaded.clear();
+                    }
+                    loaded.add(entity);
+                });
+    }
+
+    private String updateQuery(String propertyName) {
+        return updateQueries.computeIfAbsent(propertyName, name ->
+                addNamedQuery(clazz.getSimpleName() + ".update." + name,
+                        "UPDATE " + clazz.getName() + " e SET e." + checkProperty(name) + " = :propertyValue WHERE e.id = :id"));
+    }
+
+    private String findByPropertyQuery(String propertyName) {
+        return findByPropertyQueries.computeIfAbsent(propertyName, name ->
+                addNamedQuery(clazz.getSimpleName() + ".findBy." + name,
+                        "SELECT e FROM " + clazz.getName() + " e WHERE e." + checkProperty(name) + " = :propertyValue"));
+    }
+
+    private String addNamedQuery(String name, String jpql) {
+        EntityManagerFactory emf = em.getEntityManagerFactory();
+        EntityManager factoryEm = emf.createEntityManager();
+        try {
+            emf.addNamedQuery(name, factoryEm.createQuery(jpql));
+        } finally {
+            factoryEm.close();
+        }
+        return name;
+    }
+
+    private String checkProperty(String propertyName) {
+        // throws IllegalArgumentException for names that are not mapped single-valued attributes
+        return em.getMetamodel().entity(clazz).getSingularAttribute(propertyName).getName();
+    }
+
 }
@@ -37,6 +37,14 @@ public class ItemDaoImpl extends AbstractGenericDao<Item> {
         }
     }
 
+    @Override
+    protected void detach(Item item) {
+        for (Bid bid : item.getBids()) {
+            em.detach(bid);
+        }
+        em.detach(item);
+    }
+
     @Override
     public void delete(Item item) {
         for (Bid bid: item.getBids()) {
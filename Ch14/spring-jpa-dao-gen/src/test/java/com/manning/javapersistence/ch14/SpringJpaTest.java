@@ -21,6 +21,7 @@
 package com.manning.javapersistence.ch14;
 
 import com.manning.javapersistence.ch14.configuration.SpringConfiguration;
+import com.manning.javapersistence.ch14.dao.BulkInsertReport;
 import com.manning.javapersistence.ch14.dao.GenericDao;
 import org.junit.jupiter.api.AfterEach;
 import org.junit.jupiter.api.BeforeEach;
@@ -29,9 +30,16 @@ import org.junit.jupiter.api.extension.ExtendWith;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.test.context.ContextConfiguration;
 import org.springframework.test.context.junit.jupiter.SpringExtension;
+import org.springframework.transaction.IllegalTransactionStateException;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
 
 import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
 
 import static org.junit.jupiter.api.Assertions.*;
 
@@ -49,6 +57,9 @@ public class SpringJpaTest {
     @Autowired
     private GenericDao<Bid> bidDao;
 
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
     @BeforeEach
     public void setUp() {
         databaseService.init();
@@ -104,6 +115,67 @@ public class SpringJpaTest {
         assertEquals(19, bidDao.getAll().size());
     }
 
+    @Test
+    public void testFindByUnknownProperty() {
+        assertAll(
+                () -> assertThrows(IllegalArgumentException.class,
+                        () -> itemDao.findByProperty("name = name OR 1", "Item 1")),
+                () -> assertThrows(IllegalArgumentException.class,
+                        () -> itemDao.update(1L, "description", "Item 1_updated")));
+    }
+
+    @Test
+    public void testGetBidsByIds() {
+        List<Long> ids = bidDao.getAll().stream().map(Bid::getId).collect(Collectors.toList());
+        Collections.reverse(ids);
+        List<Bid> bids = bidDao.getByIds(ids);
+        assertAll(
+                () -> assertEquals(20, bids.size()),
+                () -> assertEquals(ids, bids.stream().map(Bid::getId).collect(Collectors.toList())));
+    }
+
+    @Test
+    public void testStreamItemsAndBids() {
+        // each DAO has its own extended persistence context, the rows inserted by
+        // setUp() have to be committed before the streams can see them
+        new TransactionTemplate(transactionManager).executeWithoutResult(status -> {
+            try (Stream<Item> items = itemDao.streamAll();
+                 Stream<Bid> bids = bidDao.streamByProperty("amount", new BigDecimal("1100.00"))) {
+                assertAll(
+                        () -> assertEquals(10, items.count()),
+                        () -> assertEquals(10, bids.count()));
+            }
+        });
+    }
+
+    @Test
+    public void testStreamRequiresTransaction() {
+        assertThrows(IllegalTransactionStateException.class, () -> itemDao.streamAll());
+    }
+
+    @Test
+    public void testInsertAllItems() {
+        List<Item> items = new ArrayList<>();
+        List<Bid> bids = new ArrayList<>();
+        for (int i = 0; i < 100; i++) {
+            Item item = new Item();
+            item.setName("Bulk Item " + (i + 1));
+            // Not added to Item#bids, nothing cascades from Item to Bid
+            Bid bid = new Bid();
+            bid.setAmount(new BigDecimal("500.00"));
+            bid.setItem(item);
+            bids.add(bid);
+            items.add(item);
+        }
+        BulkInsertReport report = itemDao.insertAll(items, 30);
+        bidDao.insertAll(bids, 30);
+        assertAll(
+                () -> assertEquals(100, report.getRows()),
+                () -> assertTrue(report.getRowsPerSecond() > 0),
+                () -> assertEquals(110, itemDao.getAll().size()),
+                () -> assertEquals(100, bidDao.findByProperty("amount", new BigDecimal("500.00")).size()));
+    }
+
     @AfterEach
     public void dropDown() {
         databaseService.clear();